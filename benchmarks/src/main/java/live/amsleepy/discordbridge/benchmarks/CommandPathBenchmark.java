@@ -0,0 +1,80 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CommandDispatchQueue;
+import live.amsleepy.discordbridge.CommandTrie;
+import live.amsleepy.discordbridge.CompiledTemplate;
+import live.amsleepy.discordbridge.ConfigSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parse and format steps of {@code DiscordListener.handleCommand}, with and without handing the
+ * command to the dispatch queue and running one tick of it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandPathBenchmark {
+    @Param({"10", "1000"})
+    public int commands;
+
+    private ConfigSnapshot snapshot;
+    private String message;
+    private String aliasMessage;
+    private Fakes.ManualScheduler scheduler;
+    private CommandDispatchQueue dispatchQueue;
+
+    @Setup
+    public void setup() {
+        snapshot = ConfigFixtures.snapshot(commands, 10);
+        int last = commands - 1;
+        message = "!cmd" + last + " Notch hello from discord";
+        aliasMessage = "!C" + last + " Notch hello from discord";
+        scheduler = new Fakes.ManualScheduler();
+        dispatchQueue = new CommandDispatchQueue(command -> "", 256, 20, TimeUnit.MILLISECONDS.toNanos(5));
+        dispatchQueue.start(scheduler.plugin());
+    }
+
+    @Benchmark
+    public String parseAndFormat() {
+        return format(message);
+    }
+
+    @Benchmark
+    public String parseAndFormatAlias() {
+        return format(aliasMessage);
+    }
+
+    @Benchmark
+    public Object rejectChatter() {
+        return snapshot.getCommandTrie().match("!lol that was close", 1);
+    }
+
+    @Benchmark
+    public String parseFormatAndDispatch() {
+        CommandDispatchQueue.PendingCommand pending = dispatchQueue.offer(format(message));
+        scheduler.tick();
+        return pending.getCompletion().getNow(null);
+    }
+
+    private String format(String content) {
+        CommandTrie.Match match = snapshot.getCommandTrie().match(content, 1);
+        CompiledTemplate template = match.getCommand().getTemplate();
+        String[] args = template.tokenize(content.substring(match.getArgumentsStart()).trim());
+        return template.render(args);
+    }
+}
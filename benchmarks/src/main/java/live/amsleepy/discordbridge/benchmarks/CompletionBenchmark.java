@@ -0,0 +1,68 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CompletionIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Answering one autocomplete request from the prefix index, against scanning every name as a lookup
+ * through the server's player list would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompletionBenchmark {
+    @Param({"100", "50000"})
+    public int names;
+
+    private final List<String> list = new ArrayList<>();
+    private final CompletionIndex index = new CompletionIndex();
+    private final String prefix = "Ste";
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < names; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int length = 3 + random.nextInt(10); name.length() < length; ) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+            list.add(name.toString());
+            index.add(name.toString());
+        }
+    }
+
+    @Benchmark
+    public List<String> index() {
+        return index.complete(prefix, 25);
+    }
+
+    @Benchmark
+    public List<String> scan() {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        return list.stream()
+                .filter(name -> name.toLowerCase(Locale.ROOT).startsWith(key))
+                .sorted(String.CASE_INSENSITIVE_ORDER)
+                .limit(25)
+                .collect(Collectors.toList());
+    }
+}
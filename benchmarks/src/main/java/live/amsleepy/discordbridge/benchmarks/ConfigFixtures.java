@@ -0,0 +1,79 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CommandConfiguration;
+import live.amsleepy.discordbridge.ConfigSnapshot;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.Supplier;
+
+/**
+ * Generates config.yml contents of a given size, shaped like the default config.
+ */
+final class ConfigFixtures {
+    static final long FIRST_GROUP_ROLE = 100_000_000_000_000_000L;
+    static final long COMMAND_ROLE = 200_000_000_000_000_000L;
+    static final long UNRELATED_ROLE = 900_000_000_000_000_000L;
+
+    private ConfigFixtures() {
+    }
+
+    /**
+     * Commands named cmd0, cmd1, ... each allowed for the "admins" group plus one direct role.
+     * The admins group holds roleGroupSize role IDs starting at {@link #FIRST_GROUP_ROLE}.
+     */
+    static String yaml(int commands, int roleGroupSize) {
+        StringBuilder yaml = new StringBuilder(256 + commands * 320 + roleGroupSize * 28);
+        yaml.append("commandPrefix: \"!\"\n");
+        yaml.append("roleGroups:\n  admins:\n");
+        for (int i = 0; i < roleGroupSize; i++) {
+            yaml.append("    - \"").append(FIRST_GROUP_ROLE + i).append("\"\n");
+        }
+        yaml.append("commands:\n");
+        for (int i = 0; i < commands; i++) {
+            yaml.append("  cmd").append(i).append(":\n")
+                    .append("    description: \"Benchmark command ").append(i).append("\"\n")
+                    .append("    format: \"say %s %s\"\n")
+                    .append("    roles: [\"admins\", \"").append(COMMAND_ROLE + i).append("\"]\n")
+                    .append("    aliases: [\"c").append(i).append("\"]\n")
+                    .append("    fields:\n")
+                    .append("      - name: \"target\"\n        type: \"STRING\"\n        description: \"Target\"\n")
+                    .append("      - name: \"message\"\n        type: \"STRING\"\n        description: \"Message\"\n        greedy: true\n");
+        }
+        return yaml.toString();
+    }
+
+    static YamlConfiguration config(int commands, int roleGroupSize) {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.loadFromString(yaml(commands, roleGroupSize));
+        } catch (InvalidConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        return config;
+    }
+
+    static ConfigSnapshot snapshot(int commands, int roleGroupSize) {
+        YamlConfiguration config = config(commands, roleGroupSize);
+        return quietly(() -> CommandConfiguration.buildSnapshot(config));
+    }
+
+    /**
+     * Runs the action with stdout and stderr discarded, config loading logs every command it loads.
+     */
+    static <T> T quietly(Supplier<T> action) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        try {
+            return action.get();
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CommandConfiguration;
+import live.amsleepy.discordbridge.ConfigSnapshot;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a config snapshot from an already parsed config.yml, as happens on enable and on every reload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigLoadBenchmark {
+    @Param({"10", "100", "1000"})
+    public int commands;
+
+    @Param({"1", "100", "500"})
+    public int roleGroupSize;
+
+    private YamlConfiguration config;
+
+    @Setup
+    public void setup() {
+        config = ConfigFixtures.config(commands, roleGroupSize);
+    }
+
+    @Benchmark
+    public ConfigSnapshot buildSnapshot() {
+        return ConfigFixtures.quietly(() -> CommandConfiguration.buildSnapshot(config));
+    }
+}
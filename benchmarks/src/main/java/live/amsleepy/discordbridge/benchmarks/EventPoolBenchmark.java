@@ -0,0 +1,133 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CommandConfiguration;
+import live.amsleepy.discordbridge.CommandDispatchQueue;
+import live.amsleepy.discordbridge.CompletionSources;
+import live.amsleepy.discordbridge.DiscordListener;
+import live.amsleepy.discordbridge.Metrics;
+import live.amsleepy.discordbridge.RateLimiter;
+import live.amsleepy.discordbridge.ResponseDigest;
+import live.amsleepy.discordbridge.VirtualThreads;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.events.GenericEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pools JDA could run events on, under a burst of events. The plugin keeps JDA's sequential event thread so
+ * messages from one channel are handled in order, this shows what handing events to a pool would gain.
+ * {@code listenerBurst} sends half prefix messages and half slash commands through {@link DiscordListener}
+ * until every reply is out, with this thread ticking the dispatch queue like the server does.
+ * {@code blockingBurst} runs handlers that each block for a millisecond, as one waiting on a REST call or a file does. The virtual case needs Java 21, on older
+ * versions its setup fails, run with {@code -foe false} to still get the other results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventPoolBenchmark {
+    private static final int EVENTS = 2000;
+
+    @Param({"fixed", "cached", "virtual"})
+    public String pool;
+
+    private ExecutorService executor;
+    private Fakes.ManualScheduler scheduler;
+    private CommandDispatchQueue dispatchQueue;
+    private ResponseDigest responses;
+    private DiscordListener listener;
+    private volatile CountDownLatch replies;
+    private final List<GenericEvent> events = new ArrayList<>(EVENTS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CommandConfiguration.install(ConfigFixtures.snapshot(10, 10));
+        scheduler = new Fakes.ManualScheduler();
+        dispatchQueue = new CommandDispatchQueue(command -> "", EVENTS, EVENTS, TimeUnit.SECONDS.toNanos(1));
+        dispatchQueue.start(scheduler.plugin());
+        responses = new ResponseDigest(0);
+        listener = new DiscordListener(dispatchQueue, responses, new RateLimiter(), null, null, new Metrics(), null,
+                new CompletionSources(), null);
+
+        Runnable onReply = () -> replies.countDown();
+        MessageChannelUnion channel = Fakes.channel(1, onReply);
+        for (int i = 0; i < EVENTS; i++) {
+            int command = i % 10;
+            User user = Fakes.user(i + 1, "user" + i);
+            Member member = Fakes.member(ConfigFixtures.COMMAND_ROLE + command);
+            events.add(i % 2 == 0
+                    ? Fakes.messageEvent("!cmd" + command + " Notch hello from discord", user, member, channel)
+                    : Fakes.slashEvent("cmd" + command, List.of("target", "message"), List.of("Notch", "hello from discord"), user, member, onReply));
+        }
+
+        switch (pool) {
+            case "fixed":
+                // What JDA uses by default for callbacks: a small pool sized to the CPUs
+                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+                break;
+            case "cached":
+                executor = VirtualThreads.newExecutorOrPool("Benchmark", false);
+                break;
+            default:
+                executor = VirtualThreads.newExecutor("Benchmark");
+                if (executor == null) {
+                    throw new IllegalStateException("Virtual threads need Java 21 or newer");
+                }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        responses.shutdown();
+    }
+
+    @Benchmark
+    public void listenerBurst() throws InterruptedException {
+        replies = new CountDownLatch(EVENTS);
+        for (GenericEvent event : events) {
+            executor.execute(() -> listener.onEvent(event));
+        }
+        while (!replies.await(50, TimeUnit.MICROSECONDS)) {
+            scheduler.tick();
+        }
+    }
+
+    @Benchmark
+    public void blockingBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,203 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.SlashCommandInteraction;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import net.dv8tion.jda.api.requests.restaction.WebhookMessageEditAction;
+import net.dv8tion.jda.api.requests.restaction.interactions.ReplyCallbackAction;
+import net.dv8tion.jda.api.utils.TimeUtil;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-ins for the JDA and Bukkit types on the command path, so benchmarks run without
+ * a Discord connection or a server. Only the methods the plugin calls do anything.
+ */
+final class Fakes {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private Fakes() {
+    }
+
+    static Role role(long id) {
+        return proxy(Role.class, (method, args) -> {
+            switch (method) {
+                case "getIdLong": return id;
+                case "getId": return Long.toUnsignedString(id);
+                default: return null;
+            }
+        });
+    }
+
+    static Member member(long... roleIds) {
+        List<Role> roles = new ArrayList<>(roleIds.length);
+        for (long roleId : roleIds) {
+            roles.add(role(roleId));
+        }
+        List<Role> memberRoles = List.copyOf(roles);
+        return proxy(Member.class, (method, args) -> "getRoles".equals(method) ? memberRoles : null);
+    }
+
+    static User user(long id, String name) {
+        return proxy(User.class, (method, args) -> {
+            switch (method) {
+                case "isBot": return false;
+                case "getIdLong": return id;
+                case "getName": return name;
+                case "getAsMention": return "<@" + Long.toUnsignedString(id) + ">";
+                default: return null;
+            }
+        });
+    }
+
+    /**
+     * A text channel that runs {@code onSend} for every message sent to it. The message itself goes nowhere.
+     */
+    static MessageChannelUnion channel(long id, Runnable onSend) {
+        return proxy(MessageChannelUnion.class, (method, args) -> {
+            switch (method) {
+                case "getIdLong": return id;
+                case "sendMessage":
+                    onSend.run();
+                    return sink(MessageCreateAction.class);
+                default: return null;
+            }
+        });
+    }
+
+    /**
+     * A message as the gateway delivers it, created now, in a guild channel.
+     */
+    static MessageReceivedEvent messageEvent(String content, User author, Member member, MessageChannelUnion channel) {
+        long id = nextSnowflake();
+        Message message = proxy(Message.class, (method, args) -> {
+            switch (method) {
+                case "getIdLong": return id;
+                case "getContentRaw": return content;
+                case "getAuthor": return author;
+                case "getMember": return member;
+                case "getChannel": return channel;
+                case "addReaction": return sink(RestAction.class);
+                default: return null;
+            }
+        });
+        return new MessageReceivedEvent(null, 0, message);
+    }
+
+    /**
+     * A top-level slash command with STRING options, in order. {@code onReply} runs when the acknowledgement
+     * is edited into the final result, as the listener does once the command has run.
+     */
+    static SlashCommandInteractionEvent slashEvent(String name, List<String> optionNames, List<String> optionValues,
+                                                   User user, Member member, Runnable onReply) {
+        long id = nextSnowflake();
+        List<OptionMapping> options = new ArrayList<>(optionNames.size());
+        for (int i = 0; i < optionNames.size(); i++) {
+            DataObject data = DataObject.empty().put("type", 3).put("name", optionNames.get(i)).put("value", optionValues.get(i));
+            options.add(new OptionMapping(data, new TLongObjectHashMap<>(), null, null));
+        }
+        InteractionHook hook = proxy(InteractionHook.class, (method, args) -> {
+            if ("editOriginal".equals(method)) {
+                onReply.run();
+                return sink(WebhookMessageEditAction.class);
+            }
+            return null;
+        });
+        SlashCommandInteraction interaction = proxy(SlashCommandInteraction.class, (method, args) -> {
+            switch (method) {
+                case "getIdLong": return id;
+                case "getName": return name;
+                case "getOptions": return options;
+                case "getUser": return user;
+                case "getMember": return member;
+                case "deferReply": return sink(ReplyCallbackAction.class);
+                case "getHook": return hook;
+                default: return null;
+            }
+        });
+        return new SlashCommandInteractionEvent(null, 0, interaction);
+    }
+
+    // Unique IDs whose timestamp is now, so the gateway stage sees no delay
+    private static long nextSnowflake() {
+        return TimeUtil.getDiscordTimestamp(System.currentTimeMillis()) | (SEQUENCE.getAndIncrement() & 0x3FFFFF);
+    }
+
+    /**
+     * A request that is never sent: builder methods return it again and queueing does nothing.
+     */
+    private static <T> T sink(Class<T> type) {
+        Object sink = Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[]{type}, (self, method, args) ->
+                method.getReturnType().isInstance(self) ? self : null);
+        return type.cast(sink);
+    }
+
+    /**
+     * A plugin whose scheduler only records repeating tasks, which {@link #tick()} then runs like one server tick.
+     */
+    static final class ManualScheduler {
+        private final List<Runnable> repeatingTasks = new ArrayList<>();
+        private final Plugin plugin;
+
+        ManualScheduler() {
+            BukkitTask task = proxy(BukkitTask.class, (method, args) -> null);
+            BukkitScheduler scheduler = proxy(BukkitScheduler.class, (method, args) -> {
+                if ("runTaskTimer".equals(method)) {
+                    repeatingTasks.add((Runnable) args[1]);
+                    return task;
+                }
+                return null;
+            });
+            Server server = proxy(Server.class, (method, args) -> "getScheduler".equals(method) ? scheduler : null);
+            this.plugin = proxy(Plugin.class, (method, args) -> "getServer".equals(method) ? server : null);
+        }
+
+        Plugin plugin() {
+            return plugin;
+        }
+
+        void tick() {
+            for (int i = 0; i < repeatingTasks.size(); i++) {
+                repeatingTasks.get(i).run();
+            }
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        Object proxy = Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": return System.identityHashCode(self);
+                case "equals": return self == args[0];
+                case "toString": return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(self));
+                default:
+                    Object result = handler.invoke(method.getName(), args);
+                    // Defaults such as getTimeCreated are built on the methods the handler does answer
+                    return result == null && method.isDefault() ? InvocationHandler.invokeDefault(self, method, args) : result;
+            }
+        });
+        return type.cast(proxy);
+    }
+}
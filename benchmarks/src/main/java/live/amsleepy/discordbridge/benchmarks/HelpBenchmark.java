@@ -0,0 +1,66 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.ConfigSnapshot;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Help for a member, served from the snapshot's help catalog, against rebuilding the text with streams
+ * on every call as the plugin used to.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HelpBenchmark {
+    @Param({"10", "100", "1000"})
+    public int commands;
+
+    private ConfigSnapshot snapshot;
+    private Member admin;
+    private Member oneCommand;
+
+    @Setup
+    public void setup() {
+        snapshot = ConfigFixtures.snapshot(commands, 10);
+        admin = Fakes.member(ConfigFixtures.UNRELATED_ROLE, ConfigFixtures.FIRST_GROUP_ROLE);
+        oneCommand = Fakes.member(ConfigFixtures.UNRELATED_ROLE, ConfigFixtures.COMMAND_ROLE);
+    }
+
+    @Benchmark
+    public List<MessageEmbed> cachedHelpAllCommands() {
+        return snapshot.getHelpCatalog().pagesFor(admin);
+    }
+
+    @Benchmark
+    public List<MessageEmbed> cachedHelpOneCommand() {
+        return snapshot.getHelpCatalog().pagesFor(oneCommand);
+    }
+
+    @Benchmark
+    public String legacyHelpText() {
+        List<String> lines = snapshot.getCommandList().stream()
+                .map(commandInfo -> "/" + commandInfo.getName() + " " + commandInfo.getFields().stream()
+                        .map(field -> "<" + field.getName() + ">")
+                        .collect(Collectors.joining(" ")))
+                .collect(Collectors.toList());
+        return "Available commands:\n" + String.join("\n", lines);
+    }
+}
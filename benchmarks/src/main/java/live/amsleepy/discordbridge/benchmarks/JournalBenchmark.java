@@ -0,0 +1,75 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CommandJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Journaling one command, accepted then completed, with syncs group-committed in the background,
+ * against forcing the file to disk after every record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+    private File directory;
+    private CommandJournal journal;
+    private RandomAccessFile file;
+    private long sourceId;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-bench").toFile();
+        journal = new CommandJournal(new File(directory, "journal"), Logger.getLogger("bench"), 8 * 1024 * 1024, 1000, 100);
+        file = new RandomAccessFile(new File(directory, "synced.log"), "rw");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        file.close();
+        for (File child : new File(directory, "journal").listFiles()) {
+            child.delete();
+        }
+        new File(directory, "journal").delete();
+        new File(directory, "synced.log").delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public CommandJournal.Entry groupCommit() {
+        CommandJournal.Entry entry = journal.accept(sourceId++, "slash", 1, "bench", "give Steve diamond 64");
+        journal.complete(entry, CommandJournal.Status.EXECUTED);
+        return entry;
+    }
+
+    @Benchmark
+    public long syncEachRecord() throws IOException {
+        byte[] record = ("slash " + sourceId++ + " give Steve diamond 64\n").getBytes(StandardCharsets.UTF_8);
+        file.write(record);
+        file.getFD().sync();
+        file.write(record);
+        file.getFD().sync();
+        return file.length();
+    }
+}
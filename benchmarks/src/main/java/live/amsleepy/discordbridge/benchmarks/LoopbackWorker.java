@@ -0,0 +1,33 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.NetworkWorker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A network worker without a server, for trying hub mode on one machine. It answers every command with
+ * its own name and the command, and exits when its standard input closes, e.g. when the parent process dies.
+ * <pre>java -cp target/benchmarks.jar live.amsleepy.discordbridge.benchmarks.LoopbackWorker &lt;port&gt; &lt;secret&gt; &lt;name&gt;</pre>
+ */
+public final class LoopbackWorker {
+    private LoopbackWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        String secret = args[1];
+        String name = args[2];
+        Logger logger = Logger.getLogger("LoopbackWorker-" + name);
+        logger.setLevel(Level.WARNING);
+
+        NetworkWorker worker = new NetworkWorker(name, "127.0.0.1", port, secret,
+                command -> CompletableFuture.completedFuture(name + " ran " + command), logger);
+        worker.start();
+        while (System.in.read() != -1) {
+            // Wait for the parent to go away
+        }
+        worker.stop();
+    }
+}
@@ -0,0 +1,49 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.AuditLog;
+import live.amsleepy.discordbridge.Metrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the instrumentation adds to one command: a stage and an outcome recorded, on one thread and
+ * from several threads at once as the JDA event pool does. Compare with {@code CommandPathBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private final Metrics metrics = new Metrics();
+
+    @Benchmark
+    public long timingOnly() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void recordCommand() {
+        long start = System.nanoTime();
+        metrics.recordStage(Metrics.Stage.CHECK, System.nanoTime() - start);
+        metrics.recordOutcome("sudo", AuditLog.Decision.EXECUTED, System.nanoTime() - start);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordCommandContended() {
+        recordCommand();
+    }
+}
@@ -0,0 +1,97 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.NetworkHub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * A hub on loopback with worker processes connected to it ({@link LoopbackWorker}), measuring the
+ * round trip of one command to one worker, a broadcast to every server, and a pipelined burst to one worker.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkFanOutBenchmark {
+    private static final String SECRET = "benchmark";
+    private static final int BURST = 100;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    private NetworkHub hub;
+    private final List<Process> processes = new ArrayList<>();
+    private final Function<String, CompletableFuture<String>> local = command -> CompletableFuture.completedFuture("hub ran " + command);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Logger logger = Logger.getLogger("NetworkFanOutBenchmark");
+        logger.setLevel(java.util.logging.Level.WARNING); // JMH's Level is imported
+        hub = new NetworkHub("hub", "127.0.0.1", 0, SECRET, 5000, logger);
+        hub.start();
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < workers; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), LoopbackWorker.class.getName(),
+                    String.valueOf(hub.getPort()), SECRET, "worker" + i)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start());
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (hub.getConnectedWorkers().size() < workers) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Only " + hub.getConnectedWorkers() + " connected");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        processes.forEach(Process::destroy);
+        hub.stop();
+    }
+
+    @Benchmark
+    public String oneWorker() {
+        return hub.dispatch(List.of("worker0"), "say hello", local).join();
+    }
+
+    @Benchmark
+    public String broadcast() {
+        return hub.dispatch(List.of(NetworkHub.ALL), "say hello", local).join();
+    }
+
+    // Per command, the hub keeps sending without waiting for the results
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void pipelinedBurst() {
+        List<CompletableFuture<String>> results = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            results.add(hub.dispatch(List.of("worker0"), "say " + i, local));
+        }
+        results.forEach(CompletableFuture::join);
+    }
+}
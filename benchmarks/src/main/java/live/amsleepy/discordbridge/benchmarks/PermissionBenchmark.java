@@ -0,0 +1,54 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CommandConfiguration;
+import net.dv8tion.jda.api.entities.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CommandConfiguration#userHasRole} for a member with five roles, against role groups of growing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionBenchmark {
+    @Param({"1", "10", "100", "500"})
+    public int roleGroupSize;
+
+    private CommandConfiguration.CommandInfo command;
+    private Member allowedMember;
+    private Member deniedMember;
+
+    @Setup
+    public void setup() {
+        command = ConfigFixtures.snapshot(1, roleGroupSize).getCommand("cmd0");
+        long unrelated = ConfigFixtures.UNRELATED_ROLE;
+        // The matching role comes last, so both cases check every role the member has
+        allowedMember = Fakes.member(unrelated, unrelated + 1, unrelated + 2, unrelated + 3, ConfigFixtures.FIRST_GROUP_ROLE + roleGroupSize - 1);
+        deniedMember = Fakes.member(unrelated, unrelated + 1, unrelated + 2, unrelated + 3, unrelated + 4);
+    }
+
+    @Benchmark
+    public boolean allowed() {
+        return CommandConfiguration.userHasRole(allowedMember, command);
+    }
+
+    @Benchmark
+    public boolean denied() {
+        return CommandConfiguration.userHasRole(deniedMember, command);
+    }
+}
@@ -0,0 +1,66 @@
+package live.amsleepy.discordbridge.benchmarks;
+
+import live.amsleepy.discordbridge.CompiledTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled template path with the split + String.format path it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+    private static final String FORMAT = "sudo %s %s";
+    private static final String ARGS = "Notch spawn";
+
+    private CompiledTemplate template;
+    private CompiledTemplate greedyTemplate;
+
+    @Setup
+    public void setup() {
+        template = CompiledTemplate.compile(FORMAT, false);
+        greedyTemplate = CompiledTemplate.compile(FORMAT, true);
+    }
+
+    @Benchmark
+    public String legacyStringFormat() {
+        int expectedArgsCount = FORMAT.split("%").length - 1;
+        String[] providedArgs = ARGS.split(" ");
+        if (providedArgs.length != expectedArgsCount) {
+            return null;
+        }
+        return String.format(FORMAT, (Object[]) providedArgs);
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        String[] providedArgs = template.tokenize(ARGS);
+        if (providedArgs == null) {
+            return null;
+        }
+        return template.render(providedArgs);
+    }
+
+    @Benchmark
+    public String compiledTemplateGreedy() {
+        String[] providedArgs = greedyTemplate.tokenize("Notch say hello from discord");
+        if (providedArgs == null) {
+            return null;
+        }
+        return greedyTemplate.render(providedArgs);
+    }
+}
@@ -0,0 +1,215 @@
+package live.amsleepy.discordbridge;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only JSONL audit trail of every Discord command.
+ * Event threads only put a record into a bounded buffer; a background thread writes records in batches
+ * to {@code audit/audit-<date>.jsonl}, starting a new file each day or when the current one gets too big.
+ */
+public final class AuditLog {
+    public enum Decision {
+        EXECUTED,
+        FAILED,
+        DENIED,
+        INVALID,
+        RATE_LIMITED,
+        DROPPED,
+        UNKNOWN
+    }
+
+    private final File directory;
+    private final Logger logger;
+    private final BlockingQueue<Entry> buffer;
+    private final long flushIntervalMillis;
+    private final long maxFileBytes;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private LocalDate currentDate;
+    private int currentPart;
+    private File currentFile;
+    private Writer writer;
+
+    public AuditLog(File directory, Logger logger, int bufferSize, long flushIntervalMillis, long maxFileBytes) {
+        this.directory = directory;
+        this.logger = logger;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(16, bufferSize));
+        this.flushIntervalMillis = Math.max(10, flushIntervalMillis);
+        this.maxFileBytes = Math.max(1024, maxFileBytes);
+        this.writerThread = new Thread(this::runWriter, "DiscordBridge-AuditWriter");
+        this.writerThread.setDaemon(true);
+    }
+
+    public void start() {
+        writerThread.start();
+    }
+
+    /**
+     * Records a command outcome. Never blocks, if the buffer is full the record is counted and dropped.
+     */
+    public void record(String source, long userId, String userName, String command, String args, Decision decision, long startNanos) {
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        Entry entry = new Entry(System.currentTimeMillis(), source, userId, userName, command, args, decision, latencyMicros);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the writer after it has written everything already buffered.
+     */
+    public void shutdown() {
+        // No interrupt, it would close the file channel mid-write. The writer notices within one flush interval.
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>();
+        long reportedDrops = 0;
+        while (running || !buffer.isEmpty()) {
+            try {
+                Entry first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            buffer.drainTo(batch);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                logger.warning("Audit buffer full, " + (drops - reportedDrops) + " audit records were dropped");
+                reportedDrops = drops;
+            }
+        }
+        closeWriter();
+    }
+
+    private void write(List<Entry> batch) {
+        try {
+            StringBuilder json = new StringBuilder(batch.size() * 160);
+            for (Entry entry : batch) {
+                entry.appendJson(json);
+                json.append('\n');
+            }
+            rotateIfNeeded(json.length());
+            writer.write(json.toString());
+            writer.flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write " + batch.size() + " audit records", e);
+            closeWriter();
+        }
+    }
+
+    private void rotateIfNeeded(int pendingBytes) throws IOException {
+        LocalDate today = LocalDate.now();
+        boolean newDay = !today.equals(currentDate);
+        boolean tooBig = currentFile != null && currentFile.length() + pendingBytes > maxFileBytes;
+        if (writer != null && !newDay && !tooBig) {
+            return;
+        }
+
+        closeWriter();
+        if (newDay) {
+            currentDate = today;
+            currentPart = 0;
+        }
+        Files.createDirectories(directory.toPath());
+        currentFile = fileFor(currentDate, currentPart);
+        while (currentFile.length() > 0 && currentFile.length() + pendingBytes > maxFileBytes) {
+            currentFile = fileFor(currentDate, ++currentPart);
+        }
+
+        writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(currentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                StandardCharsets.UTF_8));
+    }
+
+    private File fileFor(LocalDate date, int part) {
+        String suffix = part == 0 ? "" : "." + part;
+        return new File(directory, "audit-" + date + suffix + ".jsonl");
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close audit log", e);
+        }
+        writer = null;
+    }
+
+    private static final class Entry {
+        private final long timestamp;
+        private final String source;
+        private final long userId;
+        private final String userName;
+        private final String command;
+        private final String args;
+        private final Decision decision;
+        private final long latencyMicros;
+
+        Entry(long timestamp, String source, long userId, String userName, String command, String args, Decision decision, long latencyMicros) {
+            this.timestamp = timestamp;
+            this.source = source;
+            this.userId = userId;
+            this.userName = userName;
+            this.command = command;
+            this.args = args;
+            this.decision = decision;
+            this.latencyMicros = latencyMicros;
+        }
+
+        void appendJson(StringBuilder json) {
+            json.append("{\"time\":\"").append(Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toOffsetDateTime()).append('"');
+            json.append(",\"source\":\"").append(source).append('"');
+            json.append(",\"userId\":\"").append(Long.toUnsignedString(userId)).append('"');
+            json.append(",\"user\":");
+            JsonStrings.appendQuoted(json, userName);
+            json.append(",\"command\":");
+            JsonStrings.appendQuoted(json, command);
+            json.append(",\"args\":");
+            JsonStrings.appendQuoted(json, args);
+            json.append(",\"decision\":\"").append(decision).append('"');
+            json.append(",\"latencyMicros\":").append(latencyMicros);
+            json.append('}');
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * How much of the guild JDA keeps in memory, set with {@code discord.cacheProfile}.
+ * The plugin only reads the roles of the member who sent a command, which come with the message or
+ * interaction payload, so the minimal profile caches no members and requests only the intents in use.
+ */
+public enum CacheProfile {
+    /** No member cache, no chunking, no cache flags, only the intents enabled features need. */
+    MINIMAL,
+    /** Caches every member with the GUILD_MEMBERS intent, as earlier versions did. */
+    FULL;
+
+    public static CacheProfile fromConfig(FileConfiguration config) {
+        String value = config.getString("discord.cacheProfile", "minimal");
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown discord.cacheProfile '" + value + "', using minimal");
+            return MINIMAL;
+        }
+    }
+
+    /**
+     * Gateway intents needed by the enabled features. Slash commands need none.
+     */
+    public static Set<GatewayIntent> requiredIntents(FileConfiguration config) {
+        Set<GatewayIntent> intents = EnumSet.noneOf(GatewayIntent.class);
+        String commandPrefix = config.getString("commandPrefix", "!");
+        if (commandPrefix != null && !commandPrefix.isEmpty()) {
+            intents.add(GatewayIntent.GUILD_MESSAGES);
+            intents.add(GatewayIntent.MESSAGE_CONTENT);
+        }
+        if (config.getBoolean("relay.enabled", false)) {
+            intents.add(GatewayIntent.GUILD_MESSAGES);
+            intents.add(GatewayIntent.MESSAGE_CONTENT);
+        }
+        return intents;
+    }
+
+    public JDABuilder createBuilder(String token, Set<GatewayIntent> intents) {
+        if (this == FULL) {
+            Set<GatewayIntent> allIntents = EnumSet.of(GatewayIntent.GUILD_MEMBERS);
+            allIntents.addAll(intents);
+            return JDABuilder.createDefault(token)
+                    .enableIntents(allIntents)
+                    .setMemberCachePolicy(MemberCachePolicy.ALL);
+        }
+        // createLight disables every cache flag and uses MemberCachePolicy.NONE
+        return JDABuilder.createLight(token, intents)
+                .setChunkingFilter(ChunkingFilter.NONE);
+    }
+}
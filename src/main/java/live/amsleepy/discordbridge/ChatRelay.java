@@ -0,0 +1,311 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.utils.MarkdownSanitizer;
+import net.dv8tion.jda.api.utils.MiscUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Relays chat between the server and one Discord channel, set up from the {@code relay} config section.
+ * Outbound lines go into a bounded queue that a background thread turns into one webhook post per interval,
+ * waiting out the webhook's rate-limit bucket instead of hitting it. Inbound messages are rendered on the JDA
+ * thread and broadcast to the players in one main-thread task per burst.
+ */
+public final class ChatRelay {
+    private static final int MESSAGE_LIMIT = Message.MAX_CONTENT_LENGTH;
+    // Messages kept for retry while Discord is unreachable, about 100 KB at most
+    private static final int MAX_UNSENT = 50;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 2;
+
+    private final Plugin plugin;
+    private final Logger logger;
+    private final long channelId;
+    private final URI webhookUri; // null when sending as the bot
+    private final String webhookName;
+    private final long intervalMillis;
+    private final String chatFormat;
+    private final String joinFormat;
+    private final String quitFormat;
+    private final String deathFormat;
+    private final String inboundFormat;
+
+    private final BlockingQueue<String> outbound;
+    private final BlockingQueue<String> inbound;
+    private final AtomicBoolean inboundScheduled = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private volatile JDA jda;
+
+    // Only touched by the scheduler thread
+    private final Deque<String> unsent = new ArrayDeque<>();
+    private long blockedUntil = System.nanoTime();
+
+    private ChatRelay(Plugin plugin, ConfigurationSection section, long channelId, URI webhookUri) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.channelId = channelId;
+        this.webhookUri = webhookUri;
+        this.webhookName = section.getString("webhookName", "Minecraft");
+        this.intervalMillis = Math.max(100, section.getLong("batchIntervalMillis", 1000));
+        this.chatFormat = section.getString("formats.chat", "**{player}**: {message}");
+        this.joinFormat = section.getString("formats.join", "**{player}** joined the server");
+        this.quitFormat = section.getString("formats.quit", "**{player}** left the server");
+        this.deathFormat = section.getString("formats.death", "{message}");
+        this.inboundFormat = ChatColor.translateAlternateColorCodes('&', section.getString("formats.inbound", "&9[Discord] &7{user}&f: {message}"));
+
+        int capacity = Math.max(16, section.getInt("queueCapacity", 1000));
+        this.outbound = new ArrayBlockingQueue<>(capacity);
+        this.inbound = new ArrayBlockingQueue<>(capacity);
+        this.httpClient = webhookUri == null ? null : HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiscordBridge-ChatRelay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the relay from the config section, or returns null when it is disabled or misconfigured.
+     */
+    public static ChatRelay fromConfig(Plugin plugin, ConfigurationSection section) {
+        if (section == null || !section.getBoolean("enabled", false)) {
+            return null;
+        }
+        long channelId;
+        try {
+            channelId = MiscUtil.parseSnowflake(section.getString("channelId", ""));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid relay.channelId '" + section.getString("channelId") + "', chat relay disabled");
+            return null;
+        }
+        String webhookUrl = section.getString("webhookUrl", "");
+        URI webhookUri = null;
+        if (webhookUrl != null && !webhookUrl.isEmpty()) {
+            try {
+                webhookUri = URI.create(webhookUrl);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid relay.webhookUrl, sending relayed chat as the bot instead");
+            }
+        }
+        return new ChatRelay(plugin, section, channelId, webhookUri);
+    }
+
+    /**
+     * Starts posting outbound lines. The JDA instance is only used when no webhook is configured.
+     */
+    public void start(JDA jda) {
+        this.jda = jda;
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Makes one last attempt to post whatever is still queued, then stops the background thread. The posts
+     * run on the relay thread as usual, the caller, the main thread on disable, waits a bounded time for them.
+     */
+    public void shutdown() {
+        try {
+            scheduler.execute(() -> {
+                blockedUntil = System.nanoTime();
+                flush();
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Already shut down
+        }
+        scheduler.shutdown(); // Cancels the repeating flush, the last one above still runs
+        try {
+            if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+                logger.warning("Relayed chat was not posted within " + SHUTDOWN_TIMEOUT_SECONDS + " seconds of shutdown, dropping the rest");
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRelayChannel(long id) {
+        return id == channelId;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public void relayChat(String player, String message) {
+        enqueue(chatFormat, player, message);
+    }
+
+    public void relayJoin(String player) {
+        enqueue(joinFormat, player, "");
+    }
+
+    public void relayQuit(String player) {
+        enqueue(quitFormat, player, "");
+    }
+
+    public void relayDeath(String player, String message) {
+        enqueue(deathFormat, player, message);
+    }
+
+    // An empty format turns that event off
+    private void enqueue(String format, String player, String message) {
+        if (format == null || format.isEmpty()) {
+            return;
+        }
+        String line = format.replace("{player}", MarkdownSanitizer.escape(player))
+                .replace("{message}", MarkdownSanitizer.escape(message));
+        if (!outbound.offer(line)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Queues a Discord message for broadcast in game. Called on the JDA thread, so the line is rendered here
+     * and the main thread only has to send it.
+     */
+    public void relayToGame(String user, String message) {
+        String line = inboundFormat.replace("{user}", ChatColor.stripColor(user))
+                .replace("{message}", ChatColor.stripColor(message));
+        if (!inbound.offer(line)) {
+            dropped.increment();
+            return;
+        }
+        if (inboundScheduled.compareAndSet(false, true) && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, this::broadcastInbound);
+        }
+    }
+
+    private void broadcastInbound() {
+        // Cleared before draining, so a line offered during the drain schedules another task rather than waiting
+        inboundScheduled.set(false);
+        List<String> lines = new ArrayList<>();
+        inbound.drainTo(lines);
+        if (lines.isEmpty()) {
+            return;
+        }
+        String[] batch = lines.toArray(new String[0]);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            player.sendMessage(batch);
+        }
+        Bukkit.getConsoleSender().sendMessage(batch);
+    }
+
+    private void flush() {
+        List<String> lines = new ArrayList<>();
+        outbound.drainTo(lines);
+        if (!lines.isEmpty()) {
+            unsent.addAll(ResponseDigest.pack(lines, MESSAGE_LIMIT));
+        }
+        while (unsent.size() > MAX_UNSENT) {
+            unsent.pollFirst();
+            dropped.increment();
+        }
+
+        while (!unsent.isEmpty() && System.nanoTime() - blockedUntil >= 0) {
+            if (!post(unsent.peekFirst())) {
+                break;
+            }
+            unsent.pollFirst();
+        }
+    }
+
+    /**
+     * Posts one message. Returns false when it should be retried later, in which case blockedUntil is set.
+     */
+    private boolean post(String content) {
+        if (webhookUri == null) {
+            // JDA queues the request and handles the channel's rate limit itself
+            JDA current = jda;
+            TextChannel channel = current != null ? current.getTextChannelById(channelId) : null;
+            if (channel == null) {
+                logger.warning("Relay channel " + channelId + " not found, dropping relayed chat");
+                return true;
+            }
+            channel.sendMessage(content).setAllowedMentions(EnumSet.noneOf(Message.MentionType.class)).queue();
+            return true;
+        }
+
+        StringBuilder json = new StringBuilder(content.length() + 96);
+        json.append("{\"content\":");
+        JsonStrings.appendQuoted(json, content);
+        json.append(",\"username\":");
+        JsonStrings.appendQuoted(json, webhookName);
+        json.append(",\"allowed_mentions\":{\"parse\":[]}}");
+        HttpRequest request = HttpRequest.newBuilder(webhookUri)
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+                .build();
+
+        HttpResponse<Void> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            logger.warning("Failed to post relayed chat, retrying: " + e.getMessage());
+            blockFor(intervalMillis / 1000.0);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        int status = response.statusCode();
+        if (status == 429) {
+            blockFor(header(response, "Retry-After", 1));
+            return false;
+        }
+        if (status >= 500) {
+            blockFor(intervalMillis / 1000.0);
+            return false;
+        }
+        if (status >= 400) {
+            // Retrying a rejected message would only fail again
+            logger.warning("Discord rejected relayed chat with status " + status + ", dropping it");
+        }
+        // Wait out the bucket rather than spend a request on a 429
+        if (header(response, "X-RateLimit-Remaining", 1) <= 0) {
+            blockFor(header(response, "X-RateLimit-Reset-After", 0));
+        }
+        return true;
+    }
+
+    private void blockFor(double seconds) {
+        blockedUntil = System.nanoTime() + (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static double header(HttpResponse<?> response, String name, double fallback) {
+        try {
+            return response.headers().firstValue(name).map(Double::parseDouble).orElse(fallback);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
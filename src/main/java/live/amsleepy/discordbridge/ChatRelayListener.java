@@ -0,0 +1,50 @@
+package live.amsleepy.discordbridge;
+
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Feeds game chat, joins, quits and deaths to the {@link ChatRelay}. Handlers only format and queue,
+ * so nothing here waits on Discord.
+ */
+public class ChatRelayListener implements Listener {
+    private final ChatRelay relay;
+
+    public ChatRelayListener(ChatRelay relay) {
+        this.relay = relay;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChat(AsyncChatEvent event) {
+        relay.relayChat(event.getPlayer().getName(), plain(event.message()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        relay.relayJoin(event.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        relay.relayQuit(event.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(PlayerDeathEvent event) {
+        Component message = event.deathMessage();
+        if (message != null) {
+            relay.relayDeath(event.getEntity().getName(), plain(message));
+        }
+    }
+
+    private static String plain(Component component) {
+        return PlainTextComponentSerializer.plainText().serialize(component);
+    }
+}
@@ -3,157 +3,278 @@ package live.amsleepy.discordbridge;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
-import java.util.Collections; // Add this import
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class CommandConfiguration {
-    private static final Map<String, CommandInfo> commands = new HashMap<>();
-    private static final Map<String, List<String>> roleGroups = new HashMap<>();
+    // Rebuilt on every load and swapped in whole, readers never see a half-loaded config
+    private static final AtomicReference<ConfigSnapshot> current = new AtomicReference<>(ConfigSnapshot.EMPTY);
 
     public static void loadConfig(FileConfiguration config) {
+        current.set(buildSnapshot(config));
+    }
+
+    // Publishes a snapshot that was built and checked elsewhere, e.g. by a reload off the main thread
+    public static void install(ConfigSnapshot snapshot) {
+        current.set(snapshot);
+    }
+
+    public static ConfigSnapshot snapshot() {
+        return current.get();
+    }
+
+    // Side-effect free, safe to call off the main thread
+    public static ConfigSnapshot buildSnapshot(FileConfiguration config) {
+        String commandPrefix = config.getString("commandPrefix", "!");
+        RateLimit globalRateLimit = RateLimit.fromConfig(config.getConfigurationSection("rateLimits.global"), "rateLimits.global");
+        RateLimit userRateLimit = RateLimit.fromConfig(config.getConfigurationSection("rateLimits.perUser"), "rateLimits.perUser");
+        boolean unknownCommandReply = config.getBoolean("unknownCommand.reply", true);
+        long unknownCommandCooldownMillis = Math.max(0, config.getLong("unknownCommand.cooldownSeconds", 0) * 1000);
+        Map<String, CommandInfo> loadedCommands = new LinkedHashMap<>();
+        Map<String, List<String>> loadedRoleGroups = new HashMap<>();
+
         // Load role groups
         ConfigurationSection roleGroupSection = config.getConfigurationSection("roleGroups");
         if (roleGroupSection != null) {
             roleGroupSection.getKeys(false).forEach(key -> {
                 List<String> roleIds = roleGroupSection.getStringList(key);
-                roleGroups.put(key.toLowerCase(), roleIds);
+                loadedRoleGroups.put(key.toLowerCase(), roleIds);
             });
         }
 
-        System.out.println("Loaded roleGroups: " + roleGroups);
+        System.out.println("Loaded roleGroups: " + loadedRoleGroups);
 
         // Load commands
         ConfigurationSection commandSection = config.getConfigurationSection("commands");
         if (commandSection == null) {
             System.err.println("No commands section found in config!");
-            return;
+            return new ConfigSnapshot(commandPrefix, List.of(), loadedRoleGroups, globalRateLimit, userRateLimit, unknownCommandReply, unknownCommandCooldownMillis);
         }
 
         commandSection.getKeys(false).forEach(key -> {
             ConfigurationSection cmdSection = commandSection.getConfigurationSection(key);
             if (cmdSection == null) return;
 
-            String name = key.toLowerCase();  // Ensure lowercase key for case-insensitivity
-            String description = cmdSection.getString("description");
-            List<String> roles = cmdSection.getStringList("roles");
-            String format = cmdSection.getString("format");
-            String pingRoleOnExecute = cmdSection.getString("pingroleonexecute");
-
-            List<CommandField> fields = cmdSection.getMapList("fields").stream()
-                    .map(field -> new CommandField(
-                            (String) field.get("name"),
-                            (String) field.get("type"),
-                            (String) field.get("description"))
-                    )
-                    .collect(Collectors.toList());
-
-            commands.put(name, new CommandInfo(name, description, roles, format, fields, pingRoleOnExecute));
+            CommandInfo command = parseCommand(key.toLowerCase(), cmdSection, null, loadedRoleGroups); // Ensure lowercase key for case-insensitivity
+            loadedCommands.put(command.getName(), command);
 
             // Add logging to review the loaded command
-            System.out.println("Loaded command: " + name + " with roles: " + roles);
+            System.out.println("Loaded command: " + command.getName() + " with roles: " + command.getRoles());
         });
 
-        System.out.println("Total commands loaded: " + commands.size());
+        System.out.println("Total commands loaded: " + loadedCommands.size());
+        return new ConfigSnapshot(commandPrefix, List.copyOf(loadedCommands.values()), loadedRoleGroups, globalRateLimit, userRateLimit,
+                unknownCommandReply, unknownCommandCooldownMillis);
     }
 
-    public static CommandInfo getCommand(String command) {
-        CommandInfo cmdInfo = commands.get(command.toLowerCase()); // Ensure case insensitivity
-        if (cmdInfo == null) {
-            System.err.println("Command not found: " + command);
-        }
-        return cmdInfo;
-    }
+    // Subcommands are named "<parent> <subcommand>" and use the parent's roles, ping role, rate limit and servers unless they set their own
+    private static CommandInfo parseCommand(String name, ConfigurationSection cmdSection, CommandInfo parent, Map<String, List<String>> loadedRoleGroups) {
+        String description = cmdSection.getString("description");
+        List<String> roles = parent != null && !cmdSection.contains("roles") ? parent.getRoles() : cmdSection.getStringList("roles");
+        String format = cmdSection.getString("format");
+        String pingRoleOnExecute = parent != null && !cmdSection.contains("pingroleonexecute") ? parent.getPingRoleOnExecute() : cmdSection.getString("pingroleonexecute");
+        List<String> aliases = cmdSection.getStringList("aliases").stream().map(String::toLowerCase).collect(Collectors.toList());
+        List<String> servers = parent != null && !cmdSection.contains("servers")
+                ? parent.getServers()
+                : cmdSection.getStringList("servers").stream().map(String::toLowerCase).collect(Collectors.toList());
 
-    public static List<CommandInfo> getSlashCommands() {
-        return commands.values().stream()
+        List<CommandField> fields = cmdSection.getMapList("fields").stream()
+                .map(CommandConfiguration::parseField)
                 .collect(Collectors.toList());
+
+        // Only the last field may swallow the rest of the input
+        boolean greedyLast = !fields.isEmpty() && fields.get(fields.size() - 1).isGreedy();
+        CompiledTemplate template = CompiledTemplate.compile(format, greedyLast);
+        PermissionSet permissions = PermissionSet.compile("command " + name, roles, loadedRoleGroups);
+        long[] pingRoleIds = resolvePingRoles(name, pingRoleOnExecute, loadedRoleGroups);
+        RateLimit rateLimit = cmdSection.contains("ratelimit") || parent == null
+                ? RateLimit.fromConfig(cmdSection.getConfigurationSection("ratelimit"), "command " + name)
+                : parent.getRateLimit();
+        CommandInfo command = new CommandInfo(name, description, roles, permissions, template, fields, pingRoleOnExecute, pingRoleIds, rateLimit, aliases, servers);
+
+        // One level of subcommands, matching what Discord allows without subcommand groups
+        ConfigurationSection subcommandSection = parent == null ? cmdSection.getConfigurationSection("subcommands") : null;
+        if (subcommandSection != null) {
+            List<CommandInfo> subcommands = new ArrayList<>();
+            for (String key : subcommandSection.getKeys(false)) {
+                ConfigurationSection subSection = subcommandSection.getConfigurationSection(key);
+                if (subSection != null) {
+                    subcommands.add(parseCommand(name + " " + key.toLowerCase(), subSection, command, loadedRoleGroups));
+                }
+            }
+            command.subcommands = List.copyOf(subcommands);
+        }
+        return command;
     }
 
-    public static CommandData toCommandData(CommandInfo command) {
-        return Commands.slash(command.getName(), command.getDescription())
-                .addOptions(command.getFields().stream().map(CommandField::toOptionData).collect(Collectors.toList()));
+    // autocomplete is a source name, or a list of values to suggest
+    private static CommandField parseField(Map<?, ?> field) {
+        Object autocomplete = field.get("autocomplete");
+        String source = null;
+        List<String> choices = List.of();
+        if (autocomplete instanceof String) {
+            source = (String) autocomplete;
+        } else if (autocomplete instanceof List) {
+            source = CompletionSources.LIST;
+            choices = ((List<?>) autocomplete).stream().map(String::valueOf).collect(Collectors.toList());
+        }
+        return new CommandField(
+                (String) field.get("name"),
+                (String) field.get("type"),
+                (String) field.get("description"),
+                Boolean.TRUE.equals(field.get("greedy")),
+                source,
+                choices);
     }
 
-    // Enhanced role checking with detailed logging and role group resolution
-    public static boolean userHasRole(Member member, CommandInfo command) {
-        List<String> memberRoleIDs = member.getRoles().stream().map(role -> role.getId()).collect(Collectors.toList());
-        System.out.println("Member roles: " + memberRoleIDs);
-        System.out.println("Required roles for command " + command.getName() + ": " + command.getRoles());
-
-        // Resolve group names to role IDs
-        HashSet<String> requiredRoleIDs = new HashSet<>();
-        for (String roleNameOrID : command.getRoles()) {
-            if (roleGroups.containsKey(roleNameOrID.toLowerCase())) {
-                requiredRoleIDs.addAll(roleGroups.get(roleNameOrID.toLowerCase()));
-            } else {
-                requiredRoleIDs.add(roleNameOrID);
-            }
+    // Expands a ping role or role group into the role IDs to mention after execution
+    private static long[] resolvePingRoles(String command, String pingRole, Map<String, List<String>> roleGroups) {
+        if (pingRole == null || pingRole.isEmpty()) {
+            return new long[0];
         }
+        List<String> roleIds = roleGroups.getOrDefault(pingRole.toLowerCase(), List.of(pingRole));
+        return roleIds.stream()
+                .mapToLong(roleId -> {
+                    long id = PermissionSet.parseRoleId(roleId);
+                    if (id < 0) {
+                        System.err.println("Ignoring invalid ping role ID '" + roleId + "' for command " + command);
+                    }
+                    return id;
+                })
+                .filter(id -> id >= 0)
+                .distinct()
+                .toArray();
+    }
+
+    public static CommandInfo getCommand(String command) {
+        return getCommand(current.get(), command);
+    }
 
-        System.out.println("Translated required roles for command " + command.getName() + ": " + requiredRoleIDs);
+    public static CommandInfo getCommand(ConfigSnapshot snapshot, String command) {
+        return snapshot.getCommand(command.toLowerCase()); // Ensure case insensitivity
+    }
+
+    public static List<CommandInfo> getSlashCommands() {
+        return current.get().getCommandList();
+    }
 
-        boolean hasRole = member.getRoles().stream().anyMatch(role -> requiredRoleIDs.contains(role.getId()));
-        System.out.println("User has required role: " + hasRole);
+    // Discord does not allow options on a command that has subcommands, so the parent's own fields are prefix-only
+    public static CommandData toCommandData(CommandInfo command) {
+        SlashCommandData data = Commands.slash(command.getName(), command.getDescription());
+        if (command.getSubcommands().isEmpty()) {
+            return data.addOptions(command.getFields().stream().map(CommandField::toOptionData).collect(Collectors.toList()));
+        }
+        return data.addSubcommands(command.getSubcommands().stream()
+                .map(subcommand -> new SubcommandData(subcommand.getWord(), subcommand.getDescription())
+                        .addOptions(subcommand.getFields().stream().map(CommandField::toOptionData).collect(Collectors.toList())))
+                .collect(Collectors.toList()));
+    }
 
-        return hasRole;
+    // Role groups are expanded at load time, so this is a lookup against the precompiled set
+    public static boolean userHasRole(Member member, CommandInfo command) {
+        return command.getPermissions().matchesAny(member.getRoles());
     }
 
     // Public method to get roleGroups
     public static Map<String, List<String>> getRoleGroups() {
-        return Collections.unmodifiableMap(roleGroups);
+        return current.get().getRoleGroups();
     }
 
     public static class CommandInfo {
         private final String name;
         private final String description;
         private final List<String> roles;
-        private final String format;
+        private final PermissionSet permissions;
+        private final CompiledTemplate template;
         private final List<CommandField> fields;
         private final String pingRoleOnExecute;
+        private final long[] pingRoleIds;
+        private final RateLimit rateLimit;
+        private final List<String> aliases;
+        private final List<String> servers;
+        private List<CommandInfo> subcommands = List.of(); // set once while parsing, before the snapshot is published
+        private final String usage;
 
-        public CommandInfo(String name, String description, List<String> roles, String format, List<CommandField> fields, String pingRoleOnExecute) {
+        public CommandInfo(String name, String description, List<String> roles, PermissionSet permissions, CompiledTemplate template, List<CommandField> fields, String pingRoleOnExecute, long[] pingRoleIds, RateLimit rateLimit,
+                           List<String> aliases, List<String> servers) {
             this.name = name;
             this.description = description;
-            this.roles = roles;
-            this.format = format;
-            this.fields = fields;
+            // Copied so the published snapshot cannot be changed through these lists
+            this.roles = List.copyOf(roles);
+            this.permissions = permissions;
+            this.template = template;
+            this.fields = List.copyOf(fields);
             this.pingRoleOnExecute = pingRoleOnExecute;
+            this.pingRoleIds = pingRoleIds;
+            this.rateLimit = rateLimit;
+            this.aliases = List.copyOf(aliases);
+            this.servers = List.copyOf(servers);
+            this.usage = fields.stream()
+                    .map(field -> "<" + field.getName() + ">")
+                    .collect(Collectors.joining(" ", "/" + name + " ", ""))
+                    .trim();
         }
 
         public String getName() { return name; }
         public String getDescription() { return description; }
         public List<String> getRoles() { return roles; }
-        public String getFormat() { return format; }
+        public PermissionSet getPermissions() { return permissions; }
+        public String getFormat() { return template.getSource(); }
+        public CompiledTemplate getTemplate() { return template; }
+        public int getArgumentCount() { return template.getArgumentCount(); }
         public List<CommandField> getFields() { return fields; }
+        public CommandField getField(String name) { return fields.stream().filter(field -> field.getName().equals(name)).findFirst().orElse(null); }
         public String getPingRoleOnExecute() { return pingRoleOnExecute; }
+        public long[] getPingRoleIds() { return pingRoleIds; }
+        public RateLimit getRateLimit() { return rateLimit; } // per user of this command, null when unlimited
+        public List<String> getAliases() { return aliases; }
+        public List<String> getServers() { return servers; } // network mode targets, empty to run on this server
+        public String getUsage() { return usage; } // e.g. "/sudo <username> <command>", built once at load
+        public List<CommandInfo> getSubcommands() { return subcommands; }
+        public String getWord() { return name.substring(name.lastIndexOf(' ') + 1); } // the name without the parent's
+        public boolean isRunnable() { return !template.getSource().isEmpty(); } // false for a parent that only groups subcommands
     }
 
     public static class CommandField {
         private final String name;
         private final String type;
         private final String description;
+        private final boolean greedy;
+        private final String autocomplete;
+        private final CompletionIndex choices;
 
-        public CommandField(String name, String type, String description) {
+        public CommandField(String name, String type, String description, boolean greedy, String autocomplete, List<String> choices) {
             this.name = name;
             this.type = type;
             this.description = description;
+            this.greedy = greedy;
+            this.autocomplete = autocomplete;
+            this.choices = CompletionIndex.of(choices);
         }
 
         public String getName() { return name; }
         public String getType() { return type; }
         public String getDescription() { return description; }
+        public boolean isGreedy() { return greedy; }
+        public String getAutocomplete() { return autocomplete; } // a CompletionSources source, null for none
+        public CompletionIndex getChoices() { return choices; } // the values for the list source
 
         public net.dv8tion.jda.api.interactions.commands.build.OptionData toOptionData() {
-            return new net.dv8tion.jda.api.interactions.commands.build.OptionData(
-                    net.dv8tion.jda.api.interactions.commands.OptionType.valueOf(type.toUpperCase()), name, description, true
-            );
+            net.dv8tion.jda.api.interactions.commands.OptionType optionType = net.dv8tion.jda.api.interactions.commands.OptionType.valueOf(type.toUpperCase());
+            net.dv8tion.jda.api.interactions.commands.build.OptionData option =
+                    new net.dv8tion.jda.api.interactions.commands.build.OptionData(optionType, name, description, true);
+            // JDA throws for types without choices, the validator already reported it
+            return autocomplete != null && optionType.canSupportChoices() ? option.setAutoComplete(true) : option;
         }
     }
 }
\ No newline at end of file
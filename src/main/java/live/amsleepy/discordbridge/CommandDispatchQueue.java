@@ -0,0 +1,169 @@
+package live.amsleepy.discordbridge;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded queue between JDA threads and the server main thread.
+ * Discord handlers offer commands from any thread, and one repeating main-thread task drains them
+ * within a per-tick command count and time budget, so a burst of commands is spread over ticks.
+ */
+public final class CommandDispatchQueue {
+    private final Queue<PendingCommand> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Function<String, String> dispatcher; // runs a command and returns its output
+    private final int capacity;
+    private final int maxCommandsPerTick;
+    private final long tickBudgetNanos;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long lastDrainNanos;
+    private volatile long maxDrainNanos;
+
+    private BukkitTask task;
+
+    public CommandDispatchQueue(Function<String, String> dispatcher, int capacity, int maxCommandsPerTick, long tickBudgetNanos) {
+        this.dispatcher = dispatcher;
+        this.capacity = Math.max(1, capacity);
+        this.maxCommandsPerTick = Math.max(1, maxCommandsPerTick);
+        this.tickBudgetNanos = Math.max(0, tickBudgetNanos);
+    }
+
+    public void start(Plugin plugin) {
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    /**
+     * Stops the repeating task and runs whatever is still queued. Must be called on the main thread.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        PendingCommand pending;
+        while ((pending = poll()) != null) {
+            run(pending);
+        }
+    }
+
+    /**
+     * Queues a command for the main thread.
+     *
+     * @return the queued command, or null when the queue is full and the command was dropped
+     */
+    public PendingCommand offer(String command) {
+        return offer(command, null);
+    }
+
+    /**
+     * Queues a command for the main thread, running {@code onStart} there right before the command itself.
+     *
+     * @return the queued command, or null when the queue is full and the command was dropped
+     */
+    public PendingCommand offer(String command, Runnable onStart) {
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            rejected.increment();
+            return null;
+        }
+        PendingCommand pending = new PendingCommand(command, onStart, System.nanoTime());
+        queue.add(pending);
+        accepted.increment();
+        return pending;
+    }
+
+    /**
+     * Runs queued commands until the tick's command limit or time budget is used up.
+     * At least one command runs per tick so the queue always makes progress.
+     */
+    public void drain() {
+        long start = System.nanoTime();
+        int count = 0;
+        PendingCommand pending;
+        while (count < maxCommandsPerTick
+                && (count == 0 || System.nanoTime() - start < tickBudgetNanos)
+                && (pending = poll()) != null) {
+            run(pending);
+            count++;
+        }
+
+        if (count > 0) {
+            long elapsed = System.nanoTime() - start;
+            lastDrainNanos = elapsed;
+            if (elapsed > maxDrainNanos) {
+                maxDrainNanos = elapsed;
+            }
+        }
+    }
+
+    private PendingCommand poll() {
+        PendingCommand pending = queue.poll();
+        if (pending != null) {
+            depth.decrementAndGet();
+        }
+        return pending;
+    }
+
+    private void run(PendingCommand pending) {
+        pending.startedAt = System.nanoTime();
+        try {
+            if (pending.onStart != null) {
+                pending.onStart.run();
+            }
+            String output = dispatcher.apply(pending.getCommand());
+            pending.finishedAt = System.nanoTime();
+            dispatched.increment();
+            pending.completion.complete(output);
+        } catch (Exception e) {
+            pending.finishedAt = System.nanoTime();
+            failed.increment();
+            pending.completion.completeExceptionally(e);
+        }
+    }
+
+    public int getQueueDepth() { return depth.get(); }
+    public int getCapacity() { return capacity; }
+    public long getAcceptedCount() { return accepted.sum(); }
+    public long getRejectedCount() { return rejected.sum(); }
+    public long getDispatchedCount() { return dispatched.sum(); }
+    public long getFailedCount() { return failed.sum(); }
+    public long getLastDrainMicros() { return TimeUnit.NANOSECONDS.toMicros(lastDrainNanos); }
+    public long getMaxDrainMicros() { return TimeUnit.NANOSECONDS.toMicros(maxDrainNanos); }
+
+    public static final class PendingCommand {
+        private final String command;
+        private final Runnable onStart; // may be null
+        private final long enqueuedAt;
+        private final CompletableFuture<String> completion = new CompletableFuture<>();
+        // Written before the completion completes, which makes them visible to its callbacks
+        private long startedAt;
+        private long finishedAt;
+
+        private PendingCommand(String command, Runnable onStart, long enqueuedAt) {
+            this.command = command;
+            this.onStart = onStart;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        public String getCommand() { return command; }
+        public long getEnqueuedAt() { return enqueuedAt; }
+        public long getStartedAt() { return startedAt; } // when the main thread picked it up
+        public long getFinishedAt() { return finishedAt; }
+        /**
+         * Completes on the main thread with the command output once the command has run.
+         */
+        public CompletableFuture<String> getCompletion() { return completion; }
+    }
+}
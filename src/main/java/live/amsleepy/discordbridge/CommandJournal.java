@@ -0,0 +1,432 @@
+package live.amsleepy.discordbridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the Discord commands handed to the dispatch queue and how they ended, so commands
+ * still queued when the server stops are not lost. Records go into a memory-mapped file, which survives a
+ * crash of the server process as soon as they are copied in. Syncing to disk, which protects against the
+ * machine going down, is group-committed by a background thread every sync interval.
+ * <p>
+ * Each record is a 4-byte length, a CRC32 of the body, then the body. A torn record at the end fails its
+ * check and ends the log. When the file is full, the recent history and the unfinished commands are written
+ * to a new generation of it and the old one is deleted.
+ */
+public final class CommandJournal {
+    public enum Status {
+        PENDING,
+        EXECUTED,
+        FAILED,
+        DROPPED,
+        UNKNOWN // was running when the server stopped, so it may or may not have taken effect
+    }
+
+    private static final int MAGIC = 0x44424A31; // "DBJ1"
+    private static final int HEADER_LENGTH = 4;
+    private static final byte ACCEPTED = 1;
+    private static final byte COMPLETED = 2;
+    private static final byte STARTED = 3;
+    private static final String PREFIX = "commands-";
+    private static final String SUFFIX = ".journal";
+
+    private final File directory;
+    private final Logger logger;
+    private final int fileSize;
+    private final int historySize;
+    private final ScheduledExecutorService syncer;
+
+    // Everything below is guarded by this
+    private final Deque<Entry> history = new ArrayDeque<>();   // most recent last, bounded by historySize
+    private final Map<Long, Entry> pending = new LinkedHashMap<>(); // seq -> entry, in the order they were accepted
+    private final Map<Long, Entry> bySourceId = new HashMap<>(); // Discord message or interaction ID -> entry
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+    private MappedByteBuffer mapped;
+    private File currentFile;
+    private long generation;
+    private long nextSeq = 1;
+    private boolean dirty;
+
+    public CommandJournal(File directory, Logger logger, int fileSize, int historySize, long syncIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.logger = logger;
+        this.fileSize = Math.max(64 * 1024, fileSize);
+        this.historySize = Math.max(1, historySize);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        load();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiscordBridge-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, syncIntervalMillis);
+        syncer.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a command before it is queued. The source ID makes this idempotent: a message or interaction
+     * that was already accepted, e.g. delivered twice, returns null and must not run again.
+     *
+     * @return the entry to complete once the command ends, or null for a duplicate
+     */
+    public synchronized Entry accept(long sourceId, String source, long userId, String userName, String command) {
+        if (bySourceId.containsKey(sourceId)) {
+            return null;
+        }
+        Entry entry = new Entry(nextSeq++, sourceId, source, userId, userName, command, System.currentTimeMillis());
+        append(entry, ACCEPTED);
+        index(entry);
+        return entry;
+    }
+
+    /**
+     * Records that the main thread is about to run the command. A command that started but never completed
+     * is not replayed, it may have stopped or restarted the server itself.
+     */
+    public synchronized void start(Entry entry) {
+        if (entry.status != Status.PENDING || entry.started) {
+            return;
+        }
+        entry.started = true;
+        append(entry, STARTED);
+    }
+
+    public synchronized void complete(Entry entry, Status status) {
+        if (entry.status != Status.PENDING) {
+            return;
+        }
+        entry.status = status;
+        entry.completedAt = System.currentTimeMillis();
+        pending.remove(entry.seq);
+        append(entry, COMPLETED);
+    }
+
+    /**
+     * Commands accepted before the last stop that never completed, oldest first. Entries sharing a source ID
+     * were collapsed when the journal was read. Those that had already started must not be run again.
+     */
+    public synchronized List<Entry> getUnfinished() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /** Up to {@code limit} of the most recent commands, newest first. */
+    public synchronized List<Entry> getHistory(int limit) {
+        List<Entry> entries = new ArrayList<>(Math.min(limit, history.size()));
+        for (var it = history.descendingIterator(); it.hasNext() && entries.size() < limit; ) {
+            entries.add(it.next());
+        }
+        return entries;
+    }
+
+    public void close() {
+        syncer.shutdownNow();
+        sync();
+    }
+
+    private void sync() {
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = mapped;
+        }
+        // Outside the lock, appends keep going while the pages are written out
+        toForce.force();
+    }
+
+    private void index(Entry entry) {
+        history.addLast(entry);
+        bySourceId.put(entry.sourceId, entry);
+        if (entry.status == Status.PENDING) {
+            pending.put(entry.seq, entry);
+        }
+        while (history.size() > historySize) {
+            Entry evicted = history.removeFirst();
+            if (evicted.status != Status.PENDING) {
+                bySourceId.remove(evicted.sourceId);
+            }
+        }
+    }
+
+    private void append(Entry entry, byte type) {
+        ByteBuffer body = encode(entry, type);
+        if (mapped.remaining() < body.remaining() + 8) {
+            rollOver();
+            body = encode(entry, type);
+            if (mapped.remaining() < body.remaining() + 8) {
+                throw new IllegalStateException("Command of " + body.remaining() + " bytes does not fit in the journal");
+            }
+        }
+        write(body);
+    }
+
+    private void write(ByteBuffer body) {
+        crc.reset();
+        crc.update(body.array(), 0, body.limit());
+        mapped.putInt(body.limit()).putInt((int) crc.getValue()).put(body);
+        dirty = true;
+    }
+
+    private ByteBuffer encode(Entry entry, byte type) {
+        while (true) {
+            record.clear();
+            try {
+                record.put(type).putLong(entry.seq);
+                if (type == ACCEPTED) {
+                    record.putLong(entry.sourceId).putLong(entry.userId).putLong(entry.acceptedAt);
+                    putString(entry.source);
+                    putString(entry.userName);
+                    putString(entry.command);
+                } else if (type == COMPLETED) {
+                    record.put((byte) entry.status.ordinal()).putLong(entry.completedAt);
+                }
+                return record.flip();
+            } catch (BufferOverflowException e) {
+                record = ByteBuffer.allocate(record.capacity() * 2);
+            }
+        }
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        record.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the unfinished commands and as much recent history as fits in half the file into a new
+     * generation, so there is always room left to append. The old file is deleted once it is no longer used.
+     */
+    private void rollOver() {
+        File previous = currentFile;
+        try {
+            map(generation + 1, true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start a new journal file", e);
+        }
+        Map<Long, Entry> kept = new TreeMap<>(pending);
+        long budget = fileSize / 2;
+        for (var it = history.descendingIterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            budget -= encode(entry, ACCEPTED).remaining() + 8 + (entry.status != Status.PENDING ? encode(entry, COMPLETED).remaining() + 8 : 0);
+            if (budget < 0) {
+                break;
+            }
+            kept.put(entry.seq, entry);
+        }
+        history.removeIf(entry -> !kept.containsKey(entry.seq));
+        bySourceId.values().removeIf(entry -> !kept.containsKey(entry.seq));
+        // In the order they were accepted, the unfinished ones must all fit or the journal cannot go on
+        for (Entry entry : kept.values()) {
+            ByteBuffer body = encode(entry, ACCEPTED);
+            if (mapped.remaining() < body.remaining() + 8) {
+                throw new IllegalStateException("Too many unfinished commands to fit in the journal");
+            }
+            write(body);
+            if (entry.status != Status.PENDING) {
+                write(encode(entry, COMPLETED));
+            } else if (entry.started) {
+                write(encode(entry, STARTED));
+            }
+        }
+        mapped.force();
+        if (!previous.delete()) {
+            previous.deleteOnExit(); // Still mapped on some platforms, the next start removes it otherwise
+        }
+    }
+
+    private void map(long newGeneration, boolean fresh) throws IOException {
+        File file = new File(directory, PREFIX + newGeneration + SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        generation = newGeneration;
+        currentFile = file;
+        if (fresh) {
+            mapped.putInt(0, MAGIC);
+            mapped.position(HEADER_LENGTH);
+        }
+    }
+
+    private void load() throws IOException {
+        // The newest generation is the journal, older ones are leftovers from a roll-over
+        long newest = 0;
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        for (File file : files != null ? files : new File[0]) {
+            newest = Math.max(newest, generationOf(file));
+        }
+        for (File file : files != null ? files : new File[0]) {
+            if (generationOf(file) != newest) {
+                file.delete();
+            }
+        }
+
+        if (newest == 0) {
+            map(1, true);
+            return;
+        }
+        File file = new File(directory, PREFIX + newest + SUFFIX);
+        boolean valid = file.length() >= HEADER_LENGTH;
+        if (file.length() != fileSize && valid) {
+            // The configured size changed, read the old file and continue in a new one
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                byte[] bytes = new byte[(int) raf.length()];
+                raf.readFully(bytes);
+                readRecords(ByteBuffer.wrap(bytes));
+            }
+            currentFile = file;
+            generation = newest;
+            rollOver();
+            return;
+        }
+        map(newest, !valid);
+        if (valid && mapped.getInt(0) == MAGIC) {
+            readRecords(mapped);
+        } else {
+            logger.warning("Ignoring unreadable command journal " + file.getName());
+            mapped.putInt(0, MAGIC);
+            mapped.position(HEADER_LENGTH);
+        }
+    }
+
+    // Leaves the buffer positioned after the last intact record, which is where appending continues
+    private void readRecords(ByteBuffer buffer) {
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        int position = HEADER_LENGTH;
+        CRC32 check = new CRC32();
+        while (position + 8 <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - 8) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate().position(position + 8).limit(position + 8 + length).slice();
+            check.reset();
+            check.update(body.duplicate());
+            if ((int) check.getValue() != buffer.getInt(position + 4)) {
+                logger.warning("Command journal ends with a damaged record, ignoring it");
+                break;
+            }
+            readRecord(body, entries);
+            position += 8 + length;
+        }
+        buffer.position(position);
+
+        // Collapse entries by source ID, a command that ran under any of them counts as done
+        Map<Long, Entry> bySource = new LinkedHashMap<>();
+        for (Entry entry : entries.values()) {
+            Entry previous = bySource.get(entry.sourceId);
+            if (previous == null || previous.status == Status.PENDING) {
+                bySource.put(entry.sourceId, entry);
+            }
+        }
+        bySource.values().forEach(this::index);
+        if (!pending.isEmpty()) {
+            logger.info("Command journal has " + pending.size() + " command(s) that did not finish before the last stop");
+        }
+    }
+
+    private void readRecord(ByteBuffer body, Map<Long, Entry> entries) {
+        byte type = body.get();
+        long seq = body.getLong();
+        nextSeq = Math.max(nextSeq, seq + 1);
+        if (type == ACCEPTED) {
+            long sourceId = body.getLong();
+            long userId = body.getLong();
+            long acceptedAt = body.getLong();
+            String source = getString(body);
+            String userName = getString(body);
+            String command = getString(body);
+            entries.putIfAbsent(seq, new Entry(seq, sourceId, source, userId, userName, command, acceptedAt));
+        } else if (type == COMPLETED) {
+            Entry entry = entries.get(seq);
+            Status[] statuses = Status.values();
+            int status = body.get();
+            long completedAt = body.getLong();
+            if (entry != null && status > 0 && status < statuses.length) {
+                entry.status = statuses[status];
+                entry.completedAt = completedAt;
+            }
+        } else if (type == STARTED) {
+            Entry entry = entries.get(seq);
+            if (entry != null) {
+                entry.started = true;
+            }
+        }
+    }
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static final class Entry {
+        private final long seq;
+        private final long sourceId;
+        private final String source;
+        private final long userId;
+        private final String userName;
+        private final String command;
+        private final long acceptedAt;
+        // Only changed under the journal's lock, volatile for readers of a history snapshot
+        private volatile Status status = Status.PENDING;
+        private volatile long completedAt;
+        private volatile boolean started;
+        private volatile boolean replayed;
+
+        Entry(long seq, long sourceId, String source, long userId, String userName, String command, long acceptedAt) {
+            this.seq = seq;
+            this.sourceId = sourceId;
+            this.source = source;
+            this.userId = userId;
+            this.userName = userName;
+            this.command = command;
+            this.acceptedAt = acceptedAt;
+        }
+
+        public long getSeq() { return seq; }
+        public long getSourceId() { return sourceId; } // Discord message or interaction ID
+        public String getSource() { return source; }
+        public long getUserId() { return userId; }
+        public String getUserName() { return userName; }
+        public String getCommand() { return command; }
+        public long getAcceptedAt() { return acceptedAt; }
+        public Status getStatus() { return status; }
+        public long getCompletedAt() { return completedAt; }
+        public boolean isStarted() { return started; } // the main thread began running it
+        public boolean isReplayed() { return replayed; } // run again after a restart
+        void markReplayed() { replayed = true; }
+    }
+}
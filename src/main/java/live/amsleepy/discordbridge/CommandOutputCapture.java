@@ -0,0 +1,77 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Runs a command as a console-equivalent sender and collects everything the command sends back.
+ * Uses Paper's feedback sender, which has console permissions and works with vanilla commands too.
+ */
+public final class CommandOutputCapture {
+    private final StringBuilder output = new StringBuilder();
+    private final CommandSender sender;
+
+    public CommandOutputCapture() {
+        this.sender = Bukkit.createCommandSender(component -> append(PlainTextComponentSerializer.plainText().serialize(component)));
+    }
+
+    /**
+     * Dispatches the command on the calling thread, which must be the main thread.
+     *
+     * @return the collected output, empty if the command sent nothing back
+     * @throws IllegalStateException when the server does not know the command, so it is reported as failed rather
+     *                               than executed. A plugin executor returning false is not one: Bukkit sends the
+     *                               usage text instead, which comes back here as output.
+     */
+    public static String dispatch(String command) {
+        CommandOutputCapture capture = new CommandOutputCapture();
+        if (!Bukkit.dispatchCommand(capture.sender, command)) {
+            String output = capture.getOutput();
+            throw new IllegalStateException("Unknown command" + (output.isEmpty() ? "" : ":\n" + output));
+        }
+        return capture.getOutput();
+    }
+
+    private synchronized void append(String line) {
+        if (output.length() > 0) {
+            output.append('\n');
+        }
+        output.append(ChatColor.stripColor(line));
+    }
+
+    public synchronized String getOutput() {
+        return output.toString();
+    }
+
+    /**
+     * Formats a command result as a Discord message, cutting the output so the whole message fits
+     * into {@code maxLength} characters.
+     */
+    public static String toDiscordMessage(String header, String output, int maxLength) {
+        if (output == null || output.isBlank()) {
+            return truncate(header, maxLength);
+        }
+
+        String body = output.replace("```", "``\u200B`");
+        int room = maxLength - header.length() - "\n```\n\n```".length();
+        if (room <= 0) {
+            return truncate(header, maxLength);
+        }
+        if (body.length() > room) {
+            String notice = "\n... (" + body.length() + " characters total)";
+            body = body.substring(0, Math.max(0, room - notice.length())) + notice;
+        }
+        return header + "\n```\n" + body + "\n```";
+    }
+
+    public static String toDiscordMessage(String header, String output) {
+        return toDiscordMessage(header, output, Message.MAX_CONTENT_LENGTH);
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text.length() <= maxLength ? text : text.substring(0, maxLength - 3) + "...";
+    }
+}
@@ -6,12 +6,17 @@ import org.bukkit.command.TabCompleter;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class CommandTabCompleter implements TabCompleter {
+    private static final List<String> SUBCOMMANDS = Arrays.asList("reload", "stats", "history");
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
-        if (command.getName().equalsIgnoreCase("discordbridge") && args.length == 1) {
-            return Arrays.asList("reload");
+        if ((command.getName().equalsIgnoreCase("discordbridge") || command.getName().equalsIgnoreCase("db")) && args.length == 1) {
+            return SUBCOMMANDS.stream()
+                    .filter(subcommand -> subcommand.startsWith(args[0].toLowerCase()))
+                    .collect(Collectors.toList());
         }
         return null;
     }
@@ -0,0 +1,153 @@
+package live.amsleepy.discordbridge;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, case-insensitive prefix tree over command names and aliases, used to route prefix commands.
+ * Lookups walk the raw message content in place, so routing a message, or rejecting chatter that matches
+ * no command, allocates nothing. A command with subcommands carries a nested trie for the word after it.
+ */
+public final class CommandTrie {
+    public static final String HELP = "help";
+
+    private final Node root;
+
+    private CommandTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds a trie over the commands, their aliases, their subcommands and the built-in help command.
+     * Names win over aliases, and a word that is already taken is skipped with a warning.
+     */
+    public static CommandTrie build(Collection<CommandConfiguration.CommandInfo> commands) {
+        CommandTrie trie = new CommandTrie(new Node());
+        trie.insert(HELP, null, true, null);
+        trie.addAll(commands, "");
+        return trie;
+    }
+
+    private void addAll(Collection<CommandConfiguration.CommandInfo> commands, String owner) {
+        Map<CommandConfiguration.CommandInfo, CommandTrie> subcommandTries = new HashMap<>();
+        for (CommandConfiguration.CommandInfo command : commands) {
+            if (!command.getSubcommands().isEmpty()) {
+                CommandTrie subcommands = new CommandTrie(new Node());
+                subcommands.addAll(command.getSubcommands(), command.getName() + " ");
+                subcommandTries.put(command, subcommands);
+            }
+            insert(command.getWord(), command, false, owner).subcommands = subcommandTries.get(command);
+        }
+        for (CommandConfiguration.CommandInfo command : commands) {
+            for (String alias : command.getAliases()) {
+                insert(alias, command, false, owner).subcommands = subcommandTries.get(command);
+            }
+        }
+    }
+
+    private Node insert(String word, CommandConfiguration.CommandInfo command, boolean help, String owner) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.childOrCreate(Character.toLowerCase(word.charAt(i)));
+        }
+        if (node.command != null || node.help) {
+            System.err.println("Command word '" + owner + word + "' is already in use, ignoring it for " + command.getName());
+            return new Node(); // detached, so the caller's changes go nowhere
+        }
+        node.command = command;
+        node.help = help;
+        return node;
+    }
+
+    /**
+     * Matches the first word of the content from the given index, skipping leading whitespace, followed by a
+     * subcommand word when the matched command has subcommands.
+     *
+     * @return the match, or null when the word is not a command
+     */
+    public Match match(CharSequence content, int from) {
+        int start = skipWhitespace(content, from);
+        Node node = root;
+        int i = start;
+        while (i < content.length() && !Character.isWhitespace(content.charAt(i))) {
+            node = node.child(Character.toLowerCase(content.charAt(i)));
+            if (node == null) {
+                return null;
+            }
+            i++;
+        }
+        if (i == start || (node.command == null && !node.help)) {
+            return null;
+        }
+
+        if (node.subcommands != null) {
+            Match subcommand = node.subcommands.match(content, i);
+            if (subcommand != null) {
+                return subcommand;
+            }
+        }
+        return new Match(node.command, node.help, skipWhitespace(content, i));
+    }
+
+    private static int skipWhitespace(CharSequence content, int i) {
+        while (i < content.length() && Character.isWhitespace(content.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    public static final class Match {
+        private final CommandConfiguration.CommandInfo command;
+        private final boolean help;
+        private final int argumentsStart;
+
+        Match(CommandConfiguration.CommandInfo command, boolean help, int argumentsStart) {
+            this.command = command;
+            this.help = help;
+            this.argumentsStart = argumentsStart;
+        }
+
+        public CommandConfiguration.CommandInfo getCommand() { return command; } // null for help
+        public boolean isHelp() { return help; }
+        public int getArgumentsStart() { return argumentsStart; } // index of the first argument in the content
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // Sorted, so lookups are a binary search over a handful of chars
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private CommandConfiguration.CommandInfo command;
+        private boolean help;
+        private CommandTrie subcommands;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        // Only used while building, the trie is never changed once published
+        Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+    }
+}
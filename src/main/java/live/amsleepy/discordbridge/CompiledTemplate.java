@@ -0,0 +1,198 @@
+package live.amsleepy.discordbridge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A command format parsed once at config load into literal segments and argument slots.
+ * Supports {@code %s}, positional {@code %1$s} and {@code %%}, which covers what the
+ * formats in config.yml used with {@code String.format}.
+ */
+public final class CompiledTemplate {
+    private final String source;
+    private final String[] literals; // literals[i] comes before slots[i], the last one trails
+    private final int[] slots;       // argument index for each slot
+    private final int argumentCount;
+    private final boolean greedyLast;
+    private final int literalLength;
+
+    private CompiledTemplate(String source, String[] literals, int[] slots, int argumentCount, boolean greedyLast) {
+        this.source = source;
+        this.literals = literals;
+        this.slots = slots;
+        this.argumentCount = argumentCount;
+        this.greedyLast = greedyLast;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @param greedyLast whether the last argument swallows the rest of the input, spaces included
+     */
+    public static CompiledTemplate compile(String format, boolean greedyLast) {
+        if (format == null) {
+            format = "";
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int nextIndex = 0;
+        int argumentCount = 0;
+
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i);
+            if (c != '%' || i + 1 >= format.length()) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            char next = format.charAt(i + 1);
+            if (next == '%') {
+                literal.append('%');
+                i += 2;
+                continue;
+            }
+
+            // Positional form, %2$s
+            int j = i + 1;
+            while (j < format.length() && Character.isDigit(format.charAt(j))) {
+                j++;
+            }
+            int index = -1;
+            int end = i;
+            if (j > i + 1 && j + 1 < format.length() && format.charAt(j) == '$' && isStringConversion(format.charAt(j + 1))) {
+                index = Integer.parseInt(format.substring(i + 1, j)) - 1;
+                end = j + 2;
+            } else if (isStringConversion(next)) {
+                index = nextIndex++;
+                end = i + 2;
+            }
+            if (index < 0) {
+                System.err.println("Unsupported format specifier in '" + format + "' at position " + i + ", kept as text");
+                literal.append(c);
+                i++;
+                continue;
+            }
+            i = end;
+
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(index);
+            argumentCount = Math.max(argumentCount, index + 1);
+        }
+        literals.add(literal.toString());
+
+        int[] slotArray = slots.stream().mapToInt(Integer::intValue).toArray();
+        return new CompiledTemplate(format, literals.toArray(new String[0]), slotArray, argumentCount, greedyLast);
+    }
+
+    private static boolean isStringConversion(char c) {
+        return c == 's';
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    public boolean isGreedyLast() {
+        return greedyLast;
+    }
+
+    /**
+     * Splits raw prefix command arguments into exactly {@link #getArgumentCount()} values.
+     * Arguments are separated by whitespace, double quotes group words and support {@code \"} escapes,
+     * and a greedy last argument takes the rest of the input verbatim.
+     *
+     * @return the arguments, or null when the input does not have the expected number of arguments
+     */
+    public String[] tokenize(String input) {
+        String[] args = new String[argumentCount];
+        int length = input.length();
+        int pos = 0;
+        int count = 0;
+
+        while (true) {
+            while (pos < length && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= length) {
+                break;
+            }
+            if (count == argumentCount) {
+                return null; // Too many arguments
+            }
+
+            if (greedyLast && count == argumentCount - 1) {
+                int end = length;
+                while (end > pos && Character.isWhitespace(input.charAt(end - 1))) {
+                    end--;
+                }
+                args[count++] = input.substring(pos, end);
+                break;
+            }
+
+            if (input.charAt(pos) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                pos++;
+                boolean closed = false;
+                while (pos < length) {
+                    char c = input.charAt(pos++);
+                    if (c == '\\' && pos < length) {
+                        quoted.append(input.charAt(pos++));
+                    } else if (c == '"') {
+                        closed = true;
+                        break;
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+                if (!closed) {
+                    return null;
+                }
+                args[count++] = quoted.toString();
+            } else {
+                int start = pos;
+                while (pos < length && !Character.isWhitespace(input.charAt(pos))) {
+                    pos++;
+                }
+                args[count++] = input.substring(start, pos);
+            }
+        }
+
+        return count == argumentCount ? args : null;
+    }
+
+    // Sized exactly, so the builder never grows. Not a cached ThreadLocal, on virtual threads each event has its own thread.
+    public String render(String[] args) {
+        int length = literalLength;
+        for (int slot : slots) {
+            length += args[slot].length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]).append(args[slots[i]]);
+        }
+        out.append(literals[slots.length]);
+        return out.toString();
+    }
+
+    public String render(List<String> args) {
+        return render(args.toArray(new String[0]));
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
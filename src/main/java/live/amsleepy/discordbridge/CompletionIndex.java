@@ -0,0 +1,50 @@
+package live.amsleepy.discordbridge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Case-insensitive prefix index of names, safe to update from the main thread while JDA threads query it.
+ * Backed by a skip list keyed by the lowercase name, so a lookup seeks to the prefix and reads only the
+ * matches it returns, however many names there are.
+ */
+public final class CompletionIndex {
+    private final ConcurrentSkipListMap<String, String> names = new ConcurrentSkipListMap<>(); // lowercase -> as shown
+
+    public static CompletionIndex of(Collection<String> values) {
+        CompletionIndex index = new CompletionIndex();
+        values.forEach(index::add);
+        return index;
+    }
+
+    public void add(String name) {
+        names.put(name.toLowerCase(Locale.ROOT), name);
+    }
+
+    public void remove(String name) {
+        names.remove(name.toLowerCase(Locale.ROOT));
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return up to {@code limit} names starting with the prefix, in alphabetical order
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        List<String> matches = new ArrayList<>(Math.min(limit, 16));
+        for (Map.Entry<String, String> entry : names.tailMap(key).entrySet()) {
+            if (matches.size() == limit || !entry.getKey().startsWith(key)) {
+                break;
+            }
+            matches.add(entry.getValue());
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,90 @@
+package live.amsleepy.discordbridge;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.List;
+
+/**
+ * The indexes behind slash command autocomplete. Filled once at startup and kept current by join, quit
+ * and world events, so suggestions are answered on the JDA thread without asking the server anything.
+ */
+public final class CompletionSources implements Listener {
+    public static final String ONLINE_PLAYERS = "onlinePlayers";
+    public static final String OFFLINE_PLAYERS = "offlinePlayers";
+    public static final String WORLDS = "worlds";
+    public static final String LIST = "list"; // the field's own values
+    public static final List<String> NAMED_SOURCES = List.of(ONLINE_PLAYERS, OFFLINE_PLAYERS, WORLDS);
+
+    private final CompletionIndex onlinePlayers = new CompletionIndex();
+    private final CompletionIndex offlinePlayers = new CompletionIndex(); // everyone who has played, online players included
+    private final CompletionIndex worlds = new CompletionIndex();
+
+    /**
+     * Reads the current players and worlds. Must be called on the main thread, before the listener is registered.
+     */
+    public void populate(Server server) {
+        for (Player player : server.getOnlinePlayers()) {
+            onlinePlayers.add(player.getName());
+            offlinePlayers.add(player.getName());
+        }
+        for (OfflinePlayer player : server.getOfflinePlayers()) {
+            if (player.getName() != null) { // Unknown for players only seen through their UUID
+                offlinePlayers.add(player.getName());
+            }
+        }
+        for (World world : server.getWorlds()) {
+            worlds.add(world.getName());
+        }
+    }
+
+    /**
+     * @return suggestions for the field's source, empty when it has none
+     */
+    public List<String> complete(CommandConfiguration.CommandField field, String prefix, int limit) {
+        String source = field.getAutocomplete();
+        if (source == null) {
+            return List.of();
+        }
+        switch (source) {
+            case ONLINE_PLAYERS:
+                return onlinePlayers.complete(prefix, limit);
+            case OFFLINE_PLAYERS:
+                return offlinePlayers.complete(prefix, limit);
+            case WORLDS:
+                return worlds.complete(prefix, limit);
+            default:
+                return field.getChoices().complete(prefix, limit);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        onlinePlayers.add(event.getPlayer().getName());
+        offlinePlayers.add(event.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        onlinePlayers.remove(event.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        worlds.add(event.getWorld().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        worlds.remove(event.getWorld().getName());
+    }
+}
@@ -0,0 +1,104 @@
+package live.amsleepy.discordbridge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of everything loaded from config.yml.
+ * A new snapshot is built on every load and published in a single swap by {@link CommandConfiguration},
+ * so a command handler that grabs one snapshot sees consistent state for its whole run.
+ */
+public final class ConfigSnapshot {
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot("!", Collections.emptyList(), Collections.emptyMap(), null, null, true, 0);
+
+    private final String commandPrefix;
+    private final Map<String, CommandConfiguration.CommandInfo> commands;
+    private final List<CommandConfiguration.CommandInfo> commandList;
+    private final Map<String, List<String>> roleGroups;
+    private final RateLimit globalRateLimit;
+    private final RateLimit userRateLimit;
+    private final CommandTrie commandTrie;
+    private final HelpCatalog helpCatalog;
+    private final boolean unknownCommandReply;
+    private final long unknownCommandCooldownMillis;
+
+    /**
+     * @param commands top-level commands in config order, subcommands are reached through them
+     */
+    public ConfigSnapshot(String commandPrefix, List<CommandConfiguration.CommandInfo> commands, Map<String, List<String>> roleGroups,
+                          RateLimit globalRateLimit, RateLimit userRateLimit, boolean unknownCommandReply, long unknownCommandCooldownMillis) {
+        this.commandPrefix = commandPrefix;
+        Map<String, CommandConfiguration.CommandInfo> byName = new HashMap<>();
+        for (CommandConfiguration.CommandInfo command : commands) {
+            byName.put(command.getName(), command);
+            command.getSubcommands().forEach(subcommand -> byName.put(subcommand.getName(), subcommand));
+        }
+        this.commands = Collections.unmodifiableMap(byName);
+        this.commandList = Collections.unmodifiableList(new ArrayList<>(commands));
+        this.commandTrie = CommandTrie.build(commands);
+        this.helpCatalog = new HelpCatalog(commands);
+        this.unknownCommandReply = unknownCommandReply;
+        this.unknownCommandCooldownMillis = unknownCommandCooldownMillis;
+
+        Map<String, List<String>> groups = new HashMap<>();
+        roleGroups.forEach((name, ids) -> groups.put(name, List.copyOf(ids)));
+        this.roleGroups = Collections.unmodifiableMap(groups);
+        this.globalRateLimit = globalRateLimit;
+        this.userRateLimit = userRateLimit;
+    }
+
+    public String getCommandPrefix() {
+        return commandPrefix;
+    }
+
+    /** Looks up a command by its full name, "parent subcommand" for subcommands. */
+    public CommandConfiguration.CommandInfo getCommand(String name) {
+        return commands.get(name);
+    }
+
+    public Map<String, CommandConfiguration.CommandInfo> getCommands() {
+        return commands;
+    }
+
+    /** Top-level commands, in config order. */
+    public List<CommandConfiguration.CommandInfo> getCommandList() {
+        return commandList;
+    }
+
+    public Map<String, List<String>> getRoleGroups() {
+        return roleGroups;
+    }
+
+    /** Limit shared by every command and user, null when unlimited. */
+    public RateLimit getGlobalRateLimit() {
+        return globalRateLimit;
+    }
+
+    /** Limit on each user across all commands, null when unlimited. */
+    public RateLimit getUserRateLimit() {
+        return userRateLimit;
+    }
+
+    /** Routes prefix commands by name, alias and subcommand. */
+    public CommandTrie getCommandTrie() {
+        return commandTrie;
+    }
+
+    /** Help pages per role fingerprint, built lazily and kept until the next reload. */
+    public HelpCatalog getHelpCatalog() {
+        return helpCatalog;
+    }
+
+    /** Whether to answer prefix messages that match no command. */
+    public boolean isUnknownCommandReply() {
+        return unknownCommandReply;
+    }
+
+    /** Minimum time between unknown-command replies in one channel, 0 for no limit. */
+    public long getUnknownCommandCooldownMillis() {
+        return unknownCommandCooldownMillis;
+    }
+}
@@ -0,0 +1,261 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Checks a config before it replaces the running one and reports every problem at once, each prefixed with its path.
+ * The loader itself is lenient and skips what it cannot use, so anything reported here would otherwise be silently
+ * dropped, or throw later when the slash commands are built.
+ */
+public final class ConfigValidator {
+    // Discord's rules for command and option names, and its limits
+    private static final Pattern NAME = Pattern.compile("[-_\\p{L}\\p{N}]{1,32}");
+    private static final int MAX_DESCRIPTION_LENGTH = 100;
+    private static final int MAX_OPTIONS = 25;
+    private static final Set<OptionType> OPTION_TYPES = EnumSet.complementOf(EnumSet.of(OptionType.UNKNOWN, OptionType.SUB_COMMAND, OptionType.SUB_COMMAND_GROUP));
+
+    private final List<String> errors = new ArrayList<>();
+    private final Set<String> roleGroups = new HashSet<>();
+
+    private ConfigValidator() {
+    }
+
+    /**
+     * @return the problems found, empty when the config can be loaded as written
+     */
+    public static List<String> validate(ConfigurationSection config) {
+        ConfigValidator validator = new ConfigValidator();
+        validator.check(config);
+        return validator.errors;
+    }
+
+    private void check(ConfigurationSection config) {
+        if (config.contains("commandPrefix") && !config.isString("commandPrefix")) {
+            error("commandPrefix", "must be text");
+        }
+        String networkMode = config.getString("network.mode", "standalone").toLowerCase();
+        if (!List.of("standalone", "hub", "worker").contains(networkMode)) {
+            error("network.mode", "'" + networkMode + "' is not one of standalone, hub, worker");
+        }
+        for (String key : List.of("journal.fileSizeMb", "journal.historySize", "journal.syncIntervalMillis")) {
+            if (config.contains(key) && config.getInt(key, 0) <= 0) {
+                error(key, "must be a positive number");
+            }
+        }
+        checkRateLimit(config, "rateLimits.global");
+        checkRateLimit(config, "rateLimits.perUser");
+
+        if (config.contains("roleGroups")) {
+            ConfigurationSection groups = config.getConfigurationSection("roleGroups");
+            if (groups == null) {
+                error("roleGroups", "must be a section of group name to role IDs");
+            } else {
+                for (String group : groups.getKeys(false)) {
+                    roleGroups.add(group.toLowerCase());
+                    if (!groups.isList(group)) {
+                        error("roleGroups." + group, "must be a list of role IDs");
+                        continue;
+                    }
+                    for (String roleId : groups.getStringList(group)) {
+                        if (PermissionSet.parseRoleId(roleId) < 0) {
+                            error("roleGroups." + group, "'" + roleId + "' is not a valid role ID");
+                        }
+                    }
+                }
+            }
+        }
+
+        ConfigurationSection commands = config.getConfigurationSection("commands");
+        if (commands == null) {
+            error("commands", "section is missing");
+            return;
+        }
+        // Names and aliases share the prefix namespace, and help is built in
+        Map<String, String> words = new HashMap<>();
+        words.put(CommandTrie.HELP, "the built-in help command");
+        for (String key : commands.getKeys(false)) {
+            checkCommand("commands." + key, key, commands, false, words);
+        }
+    }
+
+    private void checkCommand(String path, String key, ConfigurationSection parent, boolean subcommand, Map<String, String> words) {
+        ConfigurationSection section = parent.getConfigurationSection(key);
+        if (section == null) {
+            error(path, "must be a section");
+            return;
+        }
+        String name = key.toLowerCase();
+        if (!NAME.matcher(name).matches()) {
+            error(path, "name must be 1-32 letters, digits, - or _");
+        }
+        claim(words, name, path);
+        checkDescription(path + ".description", section.getString("description"));
+
+        for (String alias : section.getStringList("aliases")) {
+            if (alias.isEmpty() || alias.chars().anyMatch(Character::isWhitespace)) {
+                error(path + ".aliases", "'" + alias + "' must be one word");
+            } else {
+                claim(words, alias.toLowerCase(), path + ".aliases");
+            }
+        }
+
+        checkRoles(path + ".roles", section.getStringList("roles"));
+        String pingRole = section.getString("pingroleonexecute");
+        if (pingRole != null && !pingRole.isEmpty()) {
+            checkRoles(path + ".pingroleonexecute", List.of(pingRole));
+        }
+        checkRateLimit(section, "ratelimit", path + ".ratelimit");
+        if (section.contains("servers") && (!section.isList("servers") || section.getStringList("servers").stream().anyMatch(String::isBlank))) {
+            error(path + ".servers", "must be a list of server names or \"" + NetworkHub.ALL + "\"");
+        }
+
+        ConfigurationSection subcommands = section.getConfigurationSection("subcommands");
+        if (subcommands != null && subcommand) {
+            error(path + ".subcommands", "only one level of subcommands is supported");
+        } else if (subcommands != null) {
+            if (subcommands.getKeys(false).size() > MAX_OPTIONS) {
+                error(path + ".subcommands", "Discord allows at most " + MAX_OPTIONS + " subcommands");
+            }
+            Map<String, String> subcommandWords = new HashMap<>();
+            for (String subKey : subcommands.getKeys(false)) {
+                checkCommand(path + ".subcommands." + subKey, subKey, subcommands, true, subcommandWords);
+            }
+        }
+
+        List<Map<?, ?>> fields = section.getMapList("fields");
+        String format = section.getString("format", "");
+        if (format.isEmpty() && subcommands == null) {
+            error(path, "needs a format or subcommands");
+        }
+        checkFields(path + ".fields", fields);
+        boolean greedyLast = !fields.isEmpty() && Boolean.TRUE.equals(fields.get(fields.size() - 1).get("greedy"));
+        int arguments = CompiledTemplate.compile(format, greedyLast).getArgumentCount();
+        if (!format.isEmpty() && arguments != fields.size()) {
+            error(path + ".format", "'" + format + "' takes " + arguments + " argument(s) but " + fields.size() + " field(s) are defined");
+        }
+    }
+
+    private void checkFields(String path, List<Map<?, ?>> fields) {
+        if (fields.size() > MAX_OPTIONS) {
+            error(path, "Discord allows at most " + MAX_OPTIONS + " fields");
+        }
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Map<?, ?> field = fields.get(i);
+            String fieldPath = path + "[" + i + "]";
+
+            Object name = field.get("name");
+            if (!(name instanceof String) || !NAME.matcher((String) name).matches() || !name.equals(((String) name).toLowerCase())) {
+                error(fieldPath + ".name", "must be 1-32 lowercase letters, digits, - or _");
+            } else if (!names.add((String) name)) {
+                error(fieldPath + ".name", "'" + name + "' is used by another field");
+            }
+
+            Object type = field.get("type");
+            if (!(type instanceof String) || !isOptionType((String) type)) {
+                error(fieldPath + ".type", "'" + type + "' is not one of " + OPTION_TYPES.stream().map(Enum::name).collect(Collectors.joining(", ")));
+            }
+
+            Object description = field.get("description");
+            checkDescription(fieldPath + ".description", description instanceof String ? (String) description : null);
+
+            checkAutocomplete(fieldPath + ".autocomplete", field.get("autocomplete"), type);
+
+            Object greedy = field.get("greedy");
+            if (greedy != null && !(greedy instanceof Boolean)) {
+                error(fieldPath + ".greedy", "must be true or false");
+            } else if (Boolean.TRUE.equals(greedy) && i != fields.size() - 1) {
+                error(fieldPath + ".greedy", "only the last field can be greedy");
+            }
+        }
+    }
+
+    private void checkAutocomplete(String path, Object autocomplete, Object type) {
+        if (autocomplete == null) {
+            return;
+        }
+        if (autocomplete instanceof List) {
+            if (((List<?>) autocomplete).isEmpty()) {
+                error(path, "needs at least one value");
+            }
+            for (Object value : (List<?>) autocomplete) {
+                if (String.valueOf(value).isEmpty() || String.valueOf(value).length() > MAX_DESCRIPTION_LENGTH) {
+                    error(path, "'" + value + "' must be 1-" + MAX_DESCRIPTION_LENGTH + " characters");
+                }
+            }
+        } else if (!CompletionSources.NAMED_SOURCES.contains(autocomplete)) {
+            error(path, "'" + autocomplete + "' is not one of " + String.join(", ", CompletionSources.NAMED_SOURCES) + " or a list of values");
+        }
+        // Discord also allows numbers, but every source here suggests text
+        if (!"STRING".equalsIgnoreCase(String.valueOf(type))) {
+            error(path, "only works on STRING fields");
+        }
+    }
+
+    private static boolean isOptionType(String type) {
+        try {
+            return OPTION_TYPES.contains(OptionType.valueOf(type.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Each entry is a role group or a role ID, the same lookup PermissionSet does
+    private void checkRoles(String path, List<String> roles) {
+        for (String role : roles) {
+            if (roleGroups.contains(role.toLowerCase())) {
+                continue;
+            }
+            if (PermissionSet.parseRoleId(role) < 0) {
+                error(path, role.chars().allMatch(Character::isDigit) ? "'" + role + "' is not a valid role ID" : "unknown role group '" + role + "'");
+            }
+        }
+    }
+
+    private void checkDescription(String path, String description) {
+        if (description == null || description.isEmpty()) {
+            error(path, "is required by Discord");
+        } else if (description.length() > MAX_DESCRIPTION_LENGTH) {
+            error(path, "is longer than " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+    }
+
+    private void checkRateLimit(ConfigurationSection config, String path) {
+        checkRateLimit(config, path, path);
+    }
+
+    private void checkRateLimit(ConfigurationSection config, String key, String path) {
+        if (!config.contains(key)) {
+            return;
+        }
+        ConfigurationSection section = config.getConfigurationSection(key);
+        if (section == null) {
+            error(path, "must be a section with capacity and refillPerSecond");
+        } else if (section.getInt("capacity", 0) <= 0 || section.getDouble("refillPerSecond", 0) <= 0) {
+            error(path, "capacity and refillPerSecond must be positive");
+        }
+    }
+
+    private void claim(Map<String, String> words, String word, String path) {
+        String owner = words.putIfAbsent(word, path);
+        if (owner != null) {
+            error(path, "'" + word + "' is already used by " + owner);
+        }
+    }
+
+    private void error(String path, String message) {
+        errors.add(path + ": " + message);
+    }
+}
@@ -0,0 +1,88 @@
+package live.amsleepy.discordbridge;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Calls back when a file changes, once it has been quiet for the debounce delay. Editors often save in
+ * several steps (truncate, write, rename), the debounce turns those into one reload.
+ */
+public final class ConfigWatcher {
+    private final Path file;
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final Logger logger;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public ConfigWatcher(Path file, long debounceMillis, Runnable onChange, Logger logger) throws IOException {
+        this.file = file;
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.onChange = onChange;
+        this.logger = logger;
+        // The directory is watched, watching the file itself would lose it when an editor replaces it
+        this.watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "DiscordBridge-ConfigWatcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() {
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!drain(watchService.take())) {
+                    continue;
+                }
+                // Keep waiting while the file is still being written, other files in the folder do not count
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && drain(key)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                    }
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Config watcher callback failed", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    // Whether the key carried a change to the watched file, an overflow may have lost one so it counts too
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
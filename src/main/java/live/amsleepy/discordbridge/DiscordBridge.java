@@ -2,44 +2,141 @@ package live.amsleepy.discordbridge;
 
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.exceptions.InvalidTokenException;
-import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public final class DiscordBridge extends JavaPlugin {
     private JDA jda;
-    private static String commandPrefix;
+    private CommandDispatchQueue dispatchQueue;
+    private ResponseDigest responses;
+    private AuditLog auditLog;
+    private CommandJournal journal;
+    private SlashCommandRegistrar slashCommandRegistrar;
+    private ChatRelay chatRelay;
+    private final Metrics metrics = new Metrics();
+    private MetricsServer metricsServer;
+    private NetworkHub networkHub;       // hub mode only
+    private NetworkWorker networkWorker; // worker mode only
+    private ExecutorService workers; // blocking plugin work that must stay off the main thread
+    private ConfigWatcher configWatcher;
+    private final Object reloadLock = new Object();
+    private volatile FileConfiguration config; // set by a successful reload, JavaPlugin's copy until then
     private final String prefix = ChatColor.DARK_PURPLE + "[DiscordBridge] " + ChatColor.WHITE;
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
-        loadConfig();
+        // Loaded anyway since there is nothing to fall back to, the loader skips what it cannot use
+        ConfigValidator.validate(getConfig()).forEach(error -> getLogger().warning(prefix + "config.yml: " + error));
+        loadConfig(getConfig());
 
+        // A worker has no bot of its own, the hub forwards its commands
+        String networkMode = getConfig().getString("network.mode", "standalone").toLowerCase();
         String token = getConfig().getString("discord.token");
-        if (token == null || token.isEmpty()) {
+        if (!"worker".equals(networkMode) && (token == null || token.isEmpty())) {
             getLogger().severe(prefix + "Discord bot token is not specified in the config.yml");
             getPluginLoader().disablePlugin(this);
             return;
         }
 
-        commandPrefix = getConfig().getString("commandPrefix", "!");
+        boolean virtualThreads = getConfig().getBoolean("threads.virtual", true) && VirtualThreads.isSupported();
+        workers = VirtualThreads.newExecutorOrPool("DiscordBridge-Worker", virtualThreads);
+        if (getConfig().getBoolean("threads.virtual", true) && !virtualThreads) {
+            getLogger().info(prefix + "Virtual threads need Java 21 or newer, using platform threads");
+        }
+
+        dispatchQueue = new CommandDispatchQueue(
+                CommandOutputCapture::dispatch,
+                getConfig().getInt("dispatch.queueCapacity", 256),
+                getConfig().getInt("dispatch.maxCommandsPerTick", 20),
+                TimeUnit.MICROSECONDS.toNanos(getConfig().getLong("dispatch.tickBudgetMicros", 5000)));
+        dispatchQueue.start(this);
+        if ("worker".equals(networkMode)) {
+            if (!startNetworkWorker()) {
+                getPluginLoader().disablePlugin(this);
+                return;
+            }
+            registerPluginCommands();
+            getLogger().info(prefix + "DiscordBridge v" + getDescription().getVersion() + " enabled as a network worker.");
+            return;
+        }
+        if ("hub".equals(networkMode) && !startNetworkHub()) {
+            getPluginLoader().disablePlugin(this);
+            return;
+        }
+        responses = new ResponseDigest(getConfig().getLong("responses.digestWindowMillis", 250));
+        if (getConfig().getBoolean("audit.enabled", true)) {
+            auditLog = new AuditLog(new File(getDataFolder(), "audit"), getLogger(),
+                    getConfig().getInt("audit.bufferSize", 4096),
+                    getConfig().getLong("audit.flushIntervalMillis", 1000),
+                    getConfig().getLong("audit.maxFileSizeMb", 10) * 1024 * 1024);
+            auditLog.start();
+        }
+        if (getConfig().getBoolean("journal.enabled", true)) {
+            startJournal();
+        }
+        chatRelay = ChatRelay.fromConfig(this, getConfig().getConfigurationSection("relay"));
+        if (getConfig().getBoolean("metrics.enabled", false)) {
+            String bind = getConfig().getString("metrics.bind", "127.0.0.1");
+            int port = getConfig().getInt("metrics.port", 9464);
+            try {
+                metricsServer = new MetricsServer(this, bind, port);
+                metricsServer.start();
+                getLogger().info(prefix + "Metrics available at http://" + bind + ":" + port + "/metrics");
+            } catch (IOException e) {
+                getLogger().warning(prefix + "Failed to start the metrics endpoint on " + bind + ":" + port + ": " + e.getMessage());
+            }
+        }
+
+        CompletionSources completions = new CompletionSources();
+        completions.populate(getServer());
+        getServer().getPluginManager().registerEvents(completions, this);
 
         try {
-            jda = JDABuilder.createDefault(token)
-                    .enableIntents(GatewayIntent.GUILD_MEMBERS, GatewayIntent.MESSAGE_CONTENT, GatewayIntent.GUILD_MESSAGES)
-                    .addEventListeners(new DiscordListener(this))
-                    .setMemberCachePolicy(MemberCachePolicy.ALL)
-                    .build();
+            CacheProfile cacheProfile = CacheProfile.fromConfig(getConfig());
+            Set<GatewayIntent> intents = CacheProfile.requiredIntents(getConfig());
+            long startTime = System.nanoTime();
+            JDABuilder builder = cacheProfile.createBuilder(token, intents)
+                    .addEventListeners(new DiscordListener(dispatchQueue, responses, new RateLimiter(), auditLog, chatRelay, metrics, networkHub, completions, journal), new StartupReporter(cacheProfile, intents, startTime));
+            if (virtualThreads) {
+                // Only callbacks, events stay one at a time on JDA's event thread so the relay and commands from
+                // one channel keep their order. The listener never blocks, blocking work goes to the workers pool.
+                builder.setCallbackPool(VirtualThreads.newExecutor("DiscordBridge-Callback"), true);
+            }
+            jda = builder.build();
+            slashCommandRegistrar = new SlashCommandRegistrar(jda, new File(getDataFolder(), "slash-commands.properties"), getLogger());
+            if (chatRelay != null) {
+                chatRelay.start(jda);
+                getServer().getPluginManager().registerEvents(new ChatRelayListener(chatRelay), this);
+            }
 
             getLogger().info(prefix + "Discord bot is successfully initialized.");
-            registerSlashCommands();
+            List<String> errors = new ArrayList<>();
+            List<CommandData> commands = buildCommandData(CommandConfiguration.snapshot(), errors);
+            errors.forEach(error -> getLogger().warning(prefix + "Skipping slash command " + error));
+            registerSlashCommands(commands, getConfig().getStringList("discord.guildIds"));
+            startConfigWatcher();
 
         } catch (InvalidTokenException e) {
             getLogger().severe(prefix + "Invalid Discord bot token: " + e.getMessage());
@@ -49,6 +146,11 @@ public final class DiscordBridge extends JavaPlugin {
             getPluginLoader().disablePlugin(this);
         }
 
+        registerPluginCommands();
+        getLogger().info(prefix + "DiscordBridge v" + getDescription().getVersion() + " enabled.");
+    }
+
+    private void registerPluginCommands() {
         // Register the reload command and tab completer
         getCommand("discordbridge").setExecutor(new ReloadCommand(this));
         getCommand("discordbridge").setTabCompleter(new CommandTabCompleter());
@@ -56,47 +158,294 @@ public final class DiscordBridge extends JavaPlugin {
         // Register alias /db
         getCommand("db").setExecutor(new ReloadCommand(this));
         getCommand("db").setTabCompleter(new CommandTabCompleter());
+    }
 
-        getLogger().info(prefix + "DiscordBridge v" + getDescription().getVersion() + " enabled.");
+    private boolean startNetworkHub() {
+        String secret = getConfig().getString("network.secret", "");
+        if (secret.isEmpty()) {
+            getLogger().severe(prefix + "network.secret must be set in hub mode");
+            return false;
+        }
+        String host = getConfig().getString("network.host", "127.0.0.1");
+        int port = getConfig().getInt("network.port", 25590);
+        try {
+            networkHub = new NetworkHub(getConfig().getString("network.serverName", "hub"), host, port, secret,
+                    TimeUnit.SECONDS.toMillis(getConfig().getLong("network.timeoutSeconds", 30)), getLogger());
+            networkHub.start();
+            getLogger().info(prefix + "Accepting network workers on " + host + ":" + port);
+            return true;
+        } catch (IOException e) {
+            getLogger().severe(prefix + "Failed to listen for network workers on " + host + ":" + port + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void startJournal() {
+        try {
+            journal = new CommandJournal(new File(getDataFolder(), "journal"), getLogger(),
+                    getConfig().getInt("journal.fileSizeMb", 8) * 1024 * 1024,
+                    getConfig().getInt("journal.historySize", 1000),
+                    getConfig().getLong("journal.syncIntervalMillis", 100));
+        } catch (IOException | RuntimeException e) {
+            getLogger().warning(prefix + "Failed to open the command journal, commands are not journaled: " + e.getMessage());
+            return;
+        }
+        if (getConfig().getBoolean("journal.replay", true)) {
+            replayJournal(TimeUnit.MINUTES.toMillis(getConfig().getLong("journal.replayMaxAgeMinutes", 10)));
+        }
+    }
+
+    // Queues the commands that were accepted but had not started when the server stopped, they run on the first ticks
+    private void replayJournal(long maxAgeMillis) {
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        for (CommandJournal.Entry entry : journal.getUnfinished()) {
+            String description = "`" + entry.getCommand() + "` from " + entry.getUserName();
+            if (entry.getAcceptedAt() < cutoff) {
+                getLogger().warning(prefix + "Not replaying " + description + ", it was accepted too long ago");
+                journal.complete(entry, CommandJournal.Status.DROPPED);
+                continue;
+            }
+            if (entry.isStarted()) {
+                // It may have taken effect, or be what stopped the server, so running it again is not safe
+                getLogger().warning(prefix + "Not replaying " + description + ", it was running when the server stopped");
+                journal.complete(entry, CommandJournal.Status.UNKNOWN);
+                continue;
+            }
+            entry.markReplayed();
+            CommandDispatchQueue.PendingCommand pending = dispatchQueue.offer(entry.getCommand(), () -> journal.start(entry));
+            if (pending == null) {
+                getLogger().warning(prefix + "Not replaying " + description + ", the dispatch queue is full");
+                journal.complete(entry, CommandJournal.Status.DROPPED);
+                continue;
+            }
+            getLogger().info(prefix + "Replaying " + description + ", it did not run before the server stopped");
+            pending.getCompletion().whenComplete((output, error) ->
+                    journal.complete(entry, error == null ? CommandJournal.Status.EXECUTED : CommandJournal.Status.FAILED));
+        }
+    }
+
+    private boolean startNetworkWorker() {
+        String secret = getConfig().getString("network.secret", "");
+        if (secret.isEmpty()) {
+            getLogger().severe(prefix + "network.secret must be set in worker mode");
+            return false;
+        }
+        networkWorker = new NetworkWorker(getConfig().getString("network.serverName", "worker"),
+                getConfig().getString("network.host", "127.0.0.1"), getConfig().getInt("network.port", 25590), secret,
+                command -> {
+                    CommandDispatchQueue.PendingCommand pending = dispatchQueue.offer(command);
+                    return pending != null ? pending.getCompletion() : null;
+                },
+                getLogger());
+        networkWorker.start();
+        return true;
     }
 
     @Override
     public void onDisable() {
+        // Run anything still queued instead of losing it, then flush the replies before JDA goes away
+        if (dispatchQueue != null) {
+            dispatchQueue.stop();
+        }
+        if (responses != null) {
+            responses.shutdown();
+        }
+        if (chatRelay != null) {
+            chatRelay.shutdown();
+        }
         if (jda != null) {
             jda.shutdown();
         }
+        if (networkHub != null) {
+            networkHub.stop();
+        }
+        if (networkWorker != null) {
+            networkWorker.stop();
+        }
+        if (auditLog != null) {
+            auditLog.shutdown();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (configWatcher != null) {
+            configWatcher.stop();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
         getLogger().info(prefix + "DiscordBridge disabled!");
     }
 
-    private void loadConfig() {
-        CommandConfiguration.loadConfig(getConfig());
+    /**
+     * The config in use: what the last successful reload installed, otherwise the one read at startup.
+     */
+    @Override
+    public FileConfiguration getConfig() {
+        FileConfiguration current = config;
+        return current != null ? current : super.getConfig();
+    }
+
+    private void loadConfig(FileConfiguration config) {
+        CommandConfiguration.loadConfig(config);
         System.out.println("Configuration loaded");
     }
 
-    public void reloadPluginConfig() {
-        reloadConfig();
-        loadConfig();
-        registerSlashCommands(); // Register commands after reloading the config
-        getLogger().info(prefix + "DiscordBridge plugin configuration reloaded.");
+    /**
+     * Reads, validates and builds the new config on a worker thread, so the file I/O and parsing stay off the main thread.
+     * The new commands are only swapped in when the whole file is valid, otherwise the running config stays as it was.
+     * Settings only read at startup, like the token or dispatch limits, still need a restart.
+     *
+     * @return the problems found, empty when the new config is in use
+     */
+    public CompletableFuture<List<String>> reloadPluginConfig() {
+        return CompletableFuture.supplyAsync(this::reloadNow, workers);
+    }
+
+    private List<String> reloadNow() {
+        // A save picked up by the watcher and /db reload must not interleave
+        synchronized (reloadLock) {
+            YamlConfiguration config;
+            try {
+                config = loadWithDefaults(new File(getDataFolder(), "config.yml"));
+            } catch (IOException | InvalidConfigurationException e) {
+                return List.of("config.yml: " + e.getMessage());
+            }
+
+            List<String> errors = new ArrayList<>(ConfigValidator.validate(config));
+            if (errors.isEmpty()) {
+                ConfigSnapshot snapshot = CommandConfiguration.buildSnapshot(config);
+                List<CommandData> commands = buildCommandData(snapshot, errors);
+                if (errors.isEmpty()) {
+                    CommandConfiguration.install(snapshot);
+                    this.config = config;
+                    registerSlashCommands(commands, config.getStringList("discord.guildIds")); // Register commands after reloading the config
+                    getLogger().info(prefix + "DiscordBridge plugin configuration reloaded.");
+                    return List.of();
+                }
+            }
+            getLogger().warning(prefix + "Kept the current configuration, config.yml has " + errors.size() + " problem(s):");
+            errors.forEach(error -> getLogger().warning(prefix + "  " + error));
+            return errors;
+        }
+    }
+
+    // Falls back to the jar's config.yml like JavaPlugin.getConfig() does, so startup and reloads validate the same thing
+    private YamlConfiguration loadWithDefaults(File file) throws IOException, InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.load(file);
+        InputStream defaults = getResource("config.yml");
+        if (defaults != null) {
+            try (Reader reader = new InputStreamReader(defaults, StandardCharsets.UTF_8)) {
+                config.setDefaults(YamlConfiguration.loadConfiguration(reader));
+            }
+        }
+        return config;
+    }
+
+    // Anything Discord would reject is reported instead of thrown, so one bad command cannot stop the others
+    private static List<CommandData> buildCommandData(ConfigSnapshot snapshot, List<String> errors) {
+        List<CommandData> commands = new ArrayList<>();
+        for (CommandConfiguration.CommandInfo command : snapshot.getCommandList()) {
+            try {
+                commands.add(CommandConfiguration.toCommandData(command));
+            } catch (RuntimeException e) {
+                errors.add("commands." + command.getName() + ": " + e.getMessage());
+            }
+        }
+        return commands;
     }
 
-    public static String getCommandPrefix() {
-        return commandPrefix;
+    private void startConfigWatcher() {
+        if (!getConfig().getBoolean("autoReload.enabled", false)) {
+            return;
+        }
+        try {
+            configWatcher = new ConfigWatcher(new File(getDataFolder(), "config.yml").toPath(),
+                    getConfig().getLong("autoReload.debounceMillis", 1000),
+                    () -> reloadPluginConfig().exceptionally(e -> {
+                        getLogger().severe(prefix + "Failed to reload the configuration: " + e.getMessage());
+                        return null;
+                    }), getLogger());
+            configWatcher.start();
+            getLogger().info(prefix + "Reloading config.yml automatically when it changes");
+        } catch (IOException e) {
+            getLogger().warning(prefix + "Failed to watch config.yml for changes: " + e.getMessage());
+        }
     }
 
     public String getPrefix() {
         return prefix;
     }
 
-    private void registerSlashCommands() {
-        List<CommandData> commands = CommandConfiguration.getSlashCommands().stream()
-                .map(CommandConfiguration::toCommandData)
-                .collect(Collectors.toList());
+    public CommandDispatchQueue getDispatchQueue() {
+        return dispatchQueue;
+    }
 
-        jda.updateCommands().addCommands(commands).queue(success -> {
-            getLogger().info(prefix + "Slash commands registered successfully");
-        }, failure -> {
-            getLogger().severe(prefix + "Failed to register slash commands: " + failure.getMessage());
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    public CommandJournal getJournal() {
+        return journal;
+    }
+
+    public ChatRelay getChatRelay() {
+        return chatRelay;
+    }
+
+    public NetworkHub getNetworkHub() {
+        return networkHub;
+    }
+
+    public NetworkWorker getNetworkWorker() {
+        return networkWorker;
+    }
+
+    // Only sends what changed since the last registration, and runs on a worker since it waits on REST calls
+    private void registerSlashCommands(List<CommandData> commands, List<String> guildIds) {
+        if (slashCommandRegistrar == null) {
+            return; // Network workers have no bot, the hub registers the commands
+        }
+        workers.execute(() -> {
+            try {
+                slashCommandRegistrar.register(commands, guildIds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                getLogger().severe(prefix + "Failed to register slash commands: " + e.getMessage());
+            }
         });
     }
-}
\ No newline at end of file
+
+    // Logs how long the gateway took to become ready and the heap in use, to compare cache profiles
+    private class StartupReporter extends ListenerAdapter {
+        private final CacheProfile cacheProfile;
+        private final Set<GatewayIntent> intents;
+        private final long startTime;
+
+        StartupReporter(CacheProfile cacheProfile, Set<GatewayIntent> intents, long startTime) {
+            this.cacheProfile = cacheProfile;
+            this.intents = intents;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void onReady(ReadyEvent event) {
+            long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            Runtime runtime = Runtime.getRuntime();
+            long usedHeapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+            getLogger().info(prefix + "Discord gateway ready in " + readyMillis + " ms with the " + cacheProfile.name().toLowerCase()
+                    + " cache profile (intents: " + intents + ", guilds: " + event.getGuildTotalCount()
+                    + ", cached members: " + event.getJDA().getUserCache().size() + ", heap used: " + usedHeapMb + " MB)");
+            event.getJDA().removeEventListener(this);
+        }
+    }
+}
@@ -1,22 +1,55 @@
 package live.amsleepy.discordbridge;
 
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.AutoCompleteQuery;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import org.bukkit.Bukkit;
-import org.bukkit.command.ConsoleCommandSender;
-import org.bukkit.plugin.java.JavaPlugin;
 
+import java.time.OffsetDateTime;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class DiscordListener extends ListenerAdapter {
-    private final JavaPlugin plugin;
-
-    public DiscordListener(JavaPlugin plugin) {
-        this.plugin = plugin;
+    private static final Emoji QUEUED_REACTION = Emoji.fromUnicode("\u23F3"); // hourglass
+
+    private final CommandDispatchQueue dispatchQueue;
+    private final ResponseDigest responses;
+    private final RateLimiter rateLimiter;
+    private final AuditLog auditLog; // null when auditing is disabled
+    private final ChatRelay chatRelay; // null when the relay is disabled
+    private final Metrics metrics;
+    private final NetworkHub networkHub; // null unless this server is a hub
+    private final CompletionSources completions;
+    private final CommandJournal journal; // null when journaling is disabled
+    // Channel ID -> System.nanoTime() of the last unknown-command reply
+    private final Map<Long, Long> unknownCommandReplies = new ConcurrentHashMap<>();
+
+    public DiscordListener(CommandDispatchQueue dispatchQueue, ResponseDigest responses, RateLimiter rateLimiter, AuditLog auditLog,
+                           ChatRelay chatRelay, Metrics metrics, NetworkHub networkHub,
+                           CompletionSources completions, CommandJournal journal) {
+        this.dispatchQueue = dispatchQueue;
+        this.responses = responses;
+        this.rateLimiter = rateLimiter;
+        this.auditLog = auditLog;
+        this.chatRelay = chatRelay;
+        this.metrics = metrics;
+        this.networkHub = networkHub;
+        this.completions = completions;
+        this.journal = journal;
     }
 
     @Override
@@ -24,96 +57,146 @@ public class DiscordListener extends ListenerAdapter {
         if (event.getAuthor().isBot()) return;
 
         String content = event.getMessage().getContentRaw();
-        String commandPrefix = DiscordBridge.getCommandPrefix();
-        if (content.startsWith(commandPrefix)) {
-            handleCommand(event, content.substring(commandPrefix.length()).trim());
+        ConfigSnapshot snapshot = CommandConfiguration.snapshot();
+        String commandPrefix = snapshot.getCommandPrefix();
+        // An empty prefix turns prefix commands off
+        if (!commandPrefix.isEmpty() && content.startsWith(commandPrefix)) {
+            handleCommand(event, snapshot, content, commandPrefix.length());
+        } else if (chatRelay != null && chatRelay.isRelayChannel(event.getChannel().getIdLong())) {
+            relayToGame(event);
         }
     }
 
-    private void handleCommand(MessageReceivedEvent event, String command) {
-        String[] parts = command.split(" ", 2);
-        String cmd = parts[0].toLowerCase();  // Ensure case insensitivity
-        String args = parts.length > 1 ? parts[1] : "";
-
-        System.out.println("Received command: " + cmd + " with args: " + args);
+    // Webhook posts, including the relay's own, are bot messages and already filtered out above
+    private void relayToGame(MessageReceivedEvent event) {
+        Message message = event.getMessage();
+        String text = message.getContentDisplay();
+        if (!message.getAttachments().isEmpty()) {
+            text = text.isEmpty() ? "[attachment]" : text + " [attachment]";
+        }
+        if (text.isEmpty()) {
+            return;
+        }
+        Member member = event.getMember();
+        chatRelay.relayToGame(member != null ? member.getEffectiveName() : event.getAuthor().getName(), text);
+    }
 
-        if ("help".equals(cmd)) {
-            sendHelpMessage(event);
+    // Routed straight off the raw content, the command starts at the given index
+    private void handleCommand(MessageReceivedEvent event, ConfigSnapshot snapshot, String content, int commandStart) {
+        long startTime = System.nanoTime();
+        User author = event.getAuthor();
+        recordGateway(event.getMessage().getTimeCreated());
+
+        CommandTrie.Match match = snapshot.getCommandTrie().match(content, commandStart);
+        if (match == null) {
+            replyUnknownCommand(event.getChannel(), snapshot);
+            // Metrics count unknown commands under one name, only the audit log needs the text
+            String unknown = auditLog != null ? content.substring(commandStart).trim() : "";
+            audit("prefix", author, unknown, "", AuditLog.Decision.UNKNOWN, startTime);
+            return;
+        }
+        CommandConfiguration.CommandInfo commandInfo = match.getCommand(); // null for help
+        String cmd = commandInfo != null ? commandInfo.getName() : CommandTrie.HELP;
+        String args = content.substring(match.getArgumentsStart()).trim();
+
+        // Rate limits go first so a flood costs nothing beyond this check. Help counts too, it sends a message per page.
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(snapshot, commandInfo, author.getIdLong());
+        if (decision != RateLimiter.Decision.ALLOWED) {
+            if (decision == RateLimiter.Decision.REJECTED) {
+                responses.send(event.getChannel(), author.getAsMention() + " you are sending commands too fast, slow down.");
+            }
+            audit("prefix", author, cmd, args, AuditLog.Decision.RATE_LIMITED, startTime);
             return;
         }
 
-        CommandConfiguration.CommandInfo commandInfo = CommandConfiguration.getCommand(cmd);
-        if (commandInfo == null) {
-            event.getChannel().sendMessage("Unknown command! Type `" + DiscordBridge.getCommandPrefix() + "help` to see available commands.").queue();
-            System.err.println("Unknown command received: " + cmd);
+        if (match.isHelp()) {
+            sendHelpMessage(event, snapshot);
+            return;
+        }
+        if (!commandInfo.isRunnable()) {
+            String subcommands = commandInfo.getSubcommands().stream()
+                    .map(CommandConfiguration.CommandInfo::getWord)
+                    .collect(Collectors.joining(", "));
+            responses.send(event.getChannel(), "`" + cmd + "` needs a subcommand: " + subcommands);
+            audit("prefix", author, cmd, args, AuditLog.Decision.INVALID, startTime);
             return;
         }
 
         Member member = event.getMember();
         if (member == null) {
-            event.getChannel().sendMessage("Member information is unavailable!").queue();
+            responses.send(event.getChannel(), "Member information is unavailable!");
             return;
         }
 
         boolean hasPermission = CommandConfiguration.userHasRole(member, commandInfo);
-        plugin.getLogger().info("Command: " + cmd + " | Member: " + member.getEffectiveName() + " | Roles: " + member.getRoles().stream().map(role -> role.getId()).collect(Collectors.toList()) + " | Has permission: " + hasPermission);
-
         if (!hasPermission) {
-            event.getChannel().sendMessage("You do not have permission to use this command!").queue();
+            responses.send(event.getChannel(), "You do not have permission to use this command!");
+            audit("prefix", author, cmd, args, AuditLog.Decision.DENIED, startTime);
             return;
         }
 
         // Validate command format
-        String format = commandInfo.getFormat();
-        int expectedArgsCount = format.split("%").length - 1; // Count the number of format specifiers
-        String[] providedArgs = args.split(" ");
-
-        if (providedArgs.length != expectedArgsCount) {
-            String correctFormat = "/" + cmd + " " + commandInfo.getFields().stream()
-                    .map(field -> "<" + field.getName() + ">")
-                    .collect(Collectors.joining(" "));
-            event.getChannel().sendMessage("Invalid command format! Correct format: `" + correctFormat + "`").queue();
-            return;
-        }
-
-        String formattedCommand = String.format(format, (Object[]) providedArgs);
-        executeCommandIngame(formattedCommand);
-
-        // Send a confirmation message to the channel and ping the specified role
-        event.getChannel().sendMessage("Executed command: " + formattedCommand).queue();
-
-        // Ping the role if specified
-        String pingRole = commandInfo.getPingRoleOnExecute();
-        Map<String, List<String>> roleGroups = CommandConfiguration.getRoleGroups();
-        if (pingRole != null && !pingRole.isEmpty()) {
-            if (roleGroups.containsKey(pingRole.toLowerCase())) {
-                for (String roleId : roleGroups.get(pingRole.toLowerCase())) {
-                    event.getChannel().sendMessage("<@&" + roleId + ">").queue();
-                }
-            } else {
-                event.getChannel().sendMessage("<@&" + pingRole + ">").queue();
-            }
+        CompiledTemplate template = commandInfo.getTemplate();
+        String[] providedArgs = template.tokenize(args);
+
+        if (providedArgs == null) {
+            responses.send(event.getChannel(), "Invalid command format! Correct format: `" + commandInfo.getUsage() + "`");
+            audit("prefix", author, cmd, args, AuditLog.Decision.INVALID, startTime);
+            return;
+        }
+
+        String formattedCommand = template.render(providedArgs);
+        // Acknowledge right away like the slash path does, the reply with the output follows once it has run
+        event.getMessage().addReaction(QUEUED_REACTION).queue(null, error -> { }); // Without Add Reactions only the ack is lost
+        CompletableFuture<String> completion = executeCommand(commandInfo, formattedCommand, event.getMessageIdLong(), "prefix", author);
+        if (completion == null) {
+            responses.send(event.getChannel(), "Dropped command: `" + formattedCommand + "`, the server is busy. Try again in a moment.");
+            audit("prefix", author, cmd, args, AuditLog.Decision.DROPPED, startTime);
+            return;
         }
+
+        metrics.recordStage(Metrics.Stage.CHECK, System.nanoTime() - startTime);
+
+        // Reply once the command has run, with its output and the role pings in one message
+        MessageChannel channel = event.getChannel();
+        long[] pingRoleIds = commandInfo.getPingRoleIds();
+        completion.whenComplete((output, error) -> {
+            responses.send(channel, describeResult(formattedCommand, output, error, Message.MAX_CONTENT_LENGTH), pingRoleIds);
+            metrics.recordStage(Metrics.Stage.TOTAL, System.nanoTime() - startTime);
+            audit("prefix", author, cmd, args, error == null ? AuditLog.Decision.EXECUTED : AuditLog.Decision.FAILED, startTime);
+        });
     }
 
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-        String cmd = event.getName().toLowerCase(); // Ensure case insensitivity
+        long startTime = System.nanoTime();
+        User user = event.getUser();
+        recordGateway(event.getTimeCreated());
+        String cmd = event.getFullCommandName().toLowerCase(); // "parent subcommand" for subcommands
         List<String> args = event.getOptions().stream()
                 .map(option -> option.getAsString())
                 .collect(Collectors.toList());
+        String joinedArgs = String.join(" ", args);
+
+        ConfigSnapshot snapshot = CommandConfiguration.snapshot();
+        boolean help = CommandTrie.HELP.equals(cmd);
+        CommandConfiguration.CommandInfo commandInfo = help ? null : CommandConfiguration.getCommand(snapshot, cmd);
+        if (!help && commandInfo == null) {
+            event.reply("Unknown command! Type `" + snapshot.getCommandPrefix() + "help` to see available commands.").queue();
+            audit("slash", user, cmd, joinedArgs, AuditLog.Decision.UNKNOWN, startTime);
+            return;
+        }
 
-        System.out.println("Received slash command: " + cmd + " with args: " + args);
-
-        if ("help".equals(cmd)) {
-            sendHelpMessage(event);
+        // Rate limits go first so a flood costs nothing beyond this check, interactions always need an answer.
+        // Help counts too, it sends a message per page.
+        if (rateLimiter.tryAcquire(snapshot, commandInfo, user.getIdLong()) != RateLimiter.Decision.ALLOWED) {
+            event.reply("You are sending commands too fast, slow down.").setEphemeral(true).queue();
+            audit("slash", user, cmd, joinedArgs, AuditLog.Decision.RATE_LIMITED, startTime);
             return;
         }
 
-        CommandConfiguration.CommandInfo commandInfo = CommandConfiguration.getCommand(cmd);
-        if (commandInfo == null) {
-            event.reply("Unknown command! Type `" + DiscordBridge.getCommandPrefix() + "help` to see available commands.").queue();
-            System.err.println("Unknown slash command received: " + cmd);
+        if (help) {
+            sendHelpMessage(event, snapshot);
             return;
         }
 
@@ -124,64 +207,167 @@ public class DiscordListener extends ListenerAdapter {
         }
 
         boolean hasPermission = CommandConfiguration.userHasRole(member, commandInfo);
-        plugin.getLogger().info("Command: " + cmd + " | Member: " + member.getEffectiveName() + " | Roles: " + member.getRoles().stream().map(role -> role.getId()).collect(Collectors.toList()) + " | Has permission: " + hasPermission);
-
         if (!hasPermission) {
             event.reply("You do not have permission to use this command!").queue();
+            audit("slash", user, cmd, joinedArgs, AuditLog.Decision.DENIED, startTime);
             return;
         }
 
-        String format = commandInfo.getFormat();
-        if (args.size() != format.split("%").length - 1) {
-            String correctFormat = "/" + cmd + " " + commandInfo.getFields().stream()
-                    .map(field -> "<" + field.getName() + ">")
-                    .collect(Collectors.joining(" "));
-            event.reply("Invalid command format! Correct format: `" + correctFormat + "`").queue();
+        CompiledTemplate template = commandInfo.getTemplate();
+        if (args.size() != template.getArgumentCount()) {
+            event.reply("Invalid command format! Correct format: `" + commandInfo.getUsage() + "`").queue();
+            audit("slash", user, cmd, joinedArgs, AuditLog.Decision.INVALID, startTime);
             return;
         }
 
-        String formattedCommand = String.format(format, args.toArray());
-        executeCommandIngame(formattedCommand);
+        String formattedCommand = template.render(args);
+        CompletableFuture<String> completion = executeCommand(commandInfo, formattedCommand, event.getIdLong(), "slash", user);
+        if (completion == null) {
+            event.reply("Dropped command: `" + formattedCommand + "`, the server is busy. Try again in a moment.").queue();
+            audit("slash", user, cmd, joinedArgs, AuditLog.Decision.DROPPED, startTime);
+            return;
+        }
 
-        // Send a confirmation message to the channel and ping the specified role
-        event.reply("Executed command: " + formattedCommand).queue();
+        metrics.recordStage(Metrics.Stage.CHECK, System.nanoTime() - startTime);
+
+        // Acknowledge right away so the interaction cannot time out while the main thread is busy.
+        // This is a reply rather than deferReply because Discord does not notify roles mentioned in an edit.
+        long[] pingRoleIds = commandInfo.getPingRoleIds();
+        event.reply(ResponseDigest.withPings("Queued command: `" + formattedCommand + "`", pingRoleIds))
+                .setAllowedMentions(EnumSet.noneOf(Message.MentionType.class))
+                .mentionRoles(pingRoleIds)
+                .queue();
+
+        // Then replace the reply with the command output
+        InteractionHook hook = event.getHook();
+        int pingsLength = ResponseDigest.withPings("", pingRoleIds).length();
+        completion.whenComplete((output, error) -> {
+            String result = describeResult(formattedCommand, output, error, Message.MAX_CONTENT_LENGTH - pingsLength - 1);
+            long replyStart = System.nanoTime();
+            hook.editOriginal(ResponseDigest.withPings(result, pingRoleIds)).queue(message ->
+                    metrics.recordStage(Metrics.Stage.REPLY, System.nanoTime() - replyStart));
+            metrics.recordStage(Metrics.Stage.TOTAL, System.nanoTime() - startTime);
+            audit("slash", user, cmd, joinedArgs, error == null ? AuditLog.Decision.EXECUTED : AuditLog.Decision.FAILED, startTime);
+        });
+    }
+
+    // Answered from in-memory indexes on the JDA thread, Discord only waits 3 seconds for suggestions
+    @Override
+    public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
+        ConfigSnapshot snapshot = CommandConfiguration.snapshot();
+        CommandConfiguration.CommandInfo commandInfo = CommandConfiguration.getCommand(snapshot, event.getFullCommandName());
+        Member member = event.getMember();
+        // Player names are only suggested to members who can run the command
+        if (commandInfo == null || member == null || !CommandConfiguration.userHasRole(member, commandInfo)) {
+            event.replyChoiceStrings(List.of()).queue();
+            return;
+        }
+        AutoCompleteQuery focused = event.getFocusedOption();
+        CommandConfiguration.CommandField field = commandInfo.getField(focused.getName());
+        // The indexes hold this server's players and worlds, a command run on workers gets only its fixed values
+        boolean remote = networkHub != null && !networkHub.isLocalOnly(commandInfo.getServers());
+        if (field == null || (remote && CompletionSources.NAMED_SOURCES.contains(field.getAutocomplete()))) {
+            event.replyChoiceStrings(List.of()).queue();
+            return;
+        }
+        event.replyChoiceStrings(completions.complete(field, focused.getValue(), OptionData.MAX_CHOICES)).queue();
+    }
 
-        // Ping the role if specified
-        String pingRole = commandInfo.getPingRoleOnExecute();
-        Map<String, List<String>> roleGroups = CommandConfiguration.getRoleGroups();
-        if (pingRole != null && !pingRole.isEmpty()) {
-            if (roleGroups.containsKey(pingRole.toLowerCase())) {
-                for (String roleId : roleGroups.get(pingRole.toLowerCase())) {
-                    event.getChannel().sendMessage("<@&" + roleId + ">").queue();
-                }
-            } else {
-                event.getChannel().sendMessage("<@&" + pingRole + ">").queue();
+    // Busy channels see plenty of messages that only look like commands, so this reply can be turned off or throttled
+    private void replyUnknownCommand(MessageChannel channel, ConfigSnapshot snapshot) {
+        if (!snapshot.isUnknownCommandReply()) {
+            return;
+        }
+        long cooldownMillis = snapshot.getUnknownCommandCooldownMillis();
+        if (cooldownMillis > 0) {
+            // Two threads racing past this check costs at most one extra reply
+            long now = System.nanoTime();
+            Long last = unknownCommandReplies.get(channel.getIdLong());
+            if (last != null && now - last < TimeUnit.MILLISECONDS.toNanos(cooldownMillis)) {
+                return;
             }
+            unknownCommandReplies.put(channel.getIdLong(), now);
         }
+        responses.send(channel, "Unknown command! Type `" + snapshot.getCommandPrefix() + CommandTrie.HELP + "` to see available commands.");
     }
 
-    private void sendHelpMessage(MessageReceivedEvent event) {
-        List<String> commands = CommandConfiguration.getSlashCommands().stream()
-                .map(commandInfo -> "/" + commandInfo.getName() + " " + commandInfo.getFields().stream()
-                        .map(field -> "<" + field.getName() + ">")
-                        .collect(Collectors.joining(" ")))
-                .collect(Collectors.toList());
-        String helpMessage = "Available commands:\n" + String.join("\n", commands);
-        event.getChannel().sendMessage(helpMessage).queue();
+    private void recordGateway(OffsetDateTime created) {
+        long millis = System.currentTimeMillis() - created.toInstant().toEpochMilli();
+        metrics.recordStage(Metrics.Stage.GATEWAY, TimeUnit.MILLISECONDS.toNanos(millis));
     }
 
-    private void sendHelpMessage(SlashCommandInteractionEvent event) {
-        List<String> commands = CommandConfiguration.getSlashCommands().stream()
-                .map(commandInfo -> "/" + commandInfo.getName() + " " + commandInfo.getFields().stream()
-                        .map(field -> "<" + field.getName() + ">")
-                        .collect(Collectors.joining(" ")))
-                .collect(Collectors.toList());
-        String helpMessage = "Available commands:\n" + String.join("\n", commands);
-        event.reply(helpMessage).queue();
+    private void recordExecution(CommandDispatchQueue.PendingCommand pending) {
+        metrics.recordStage(Metrics.Stage.QUEUE_WAIT, pending.getStartedAt() - pending.getEnqueuedAt());
+        metrics.recordStage(Metrics.Stage.EXECUTE, pending.getFinishedAt() - pending.getStartedAt());
+    }
+
+    // Every outcome goes through here, so it also feeds the per-command metrics
+    private void audit(String source, User user, String command, String args, AuditLog.Decision decision, long startTime) {
+        String metricName = decision == AuditLog.Decision.UNKNOWN ? Metrics.UNKNOWN_COMMAND : command;
+        metrics.recordOutcome(metricName, decision, System.nanoTime() - startTime);
+        if (auditLog != null) {
+            auditLog.record(source, user.getIdLong(), user.getName(), command, args, decision, startTime);
+        }
+    }
+
+    private static String describeResult(String command, String output, Throwable error, int maxLength) {
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            return CommandOutputCapture.toDiscordMessage("Failed to execute command: `" + command + "`", String.valueOf(cause.getMessage()), maxLength);
+        }
+        return CommandOutputCapture.toDiscordMessage("Executed command: `" + command + "`", output, maxLength);
+    }
+
+    // Pages are cached per role fingerprint in the snapshot, so this only looks them up
+    private void sendHelpMessage(MessageReceivedEvent event, ConfigSnapshot snapshot) {
+        for (MessageEmbed page : snapshot.getHelpCatalog().pagesFor(event.getMember())) {
+            event.getChannel().sendMessageEmbeds(page).queue();
+        }
     }
 
-    private void executeCommandIngame(String command) {
-        ConsoleCommandSender console = Bukkit.getServer().getConsoleSender();
-        Bukkit.getScheduler().runTask(plugin, () -> Bukkit.getServer().dispatchCommand(console, command));
+    private void sendHelpMessage(SlashCommandInteractionEvent event, ConfigSnapshot snapshot) {
+        List<MessageEmbed> pages = snapshot.getHelpCatalog().pagesFor(event.getMember());
+        event.replyEmbeds(pages.get(0)).setEphemeral(true).queue(hook -> {
+            for (MessageEmbed page : pages.subList(1, pages.size())) {
+                hook.sendMessageEmbeds(page).setEphemeral(true).queue();
+            }
+        });
+    }
+
+    // On a hub, commands with servers go to those servers, everything else runs here. Null when it was dropped.
+    private CompletableFuture<String> executeCommand(CommandConfiguration.CommandInfo command, String formattedCommand, long sourceId, String source, User user) {
+        if (networkHub != null && !command.getServers().isEmpty()) {
+            return networkHub.dispatch(command.getServers(), formattedCommand, formatted -> executeCommandIngame(formatted, sourceId, source, user));
+        }
+        return executeCommandIngame(formattedCommand, sourceId, source, user);
+    }
+
+    /**
+     * Hands the command to the main-thread dispatch queue, null when the queue is full. It is journaled first,
+     * keyed by the Discord message or interaction ID, so a restart before it runs does not lose it and the
+     * same message never runs twice.
+     */
+    private CompletableFuture<String> executeCommandIngame(String command, long sourceId, String source, User user) {
+        CommandJournal.Entry entry = null;
+        if (journal != null) {
+            entry = journal.accept(sourceId, source, user.getIdLong(), user.getName(), command);
+            if (entry == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("this message was already run"));
+            }
+        }
+        CommandJournal.Entry journaled = entry;
+        CommandDispatchQueue.PendingCommand pending = dispatchQueue.offer(command, journaled != null ? () -> journal.start(journaled) : null);
+        if (pending == null) {
+            if (entry != null) {
+                journal.complete(entry, CommandJournal.Status.DROPPED);
+            }
+            return null;
+        }
+        return pending.getCompletion().whenComplete((output, error) -> {
+            recordExecution(pending);
+            if (journaled != null) {
+                journal.complete(journaled, error == null ? CommandJournal.Status.EXECUTED : CommandJournal.Status.FAILED);
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package live.amsleepy.discordbridge;
+
+import javax.crypto.Mac;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * One socket between a hub and a worker. Frames can be sent from any thread without blocking: a writer thread
+ * takes everything queued, writes it and flushes once, so a burst of pipelined frames costs one syscall.
+ * Once authenticated, each frame carries a MAC over its sequence number and contents.
+ */
+final class FramedConnection {
+    private static final byte[] CLOSE = new byte[0];
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final BlockingQueue<byte[]> outbound = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private final Object sendLock = new Object(); // sequence numbers follow the queue order
+    private Mac sendMac;    // guarded by sendLock, null until authenticated
+    private long sendSequence;
+    private Mac receiveMac; // only used by the reading thread
+    private long receiveSequence;
+    private volatile boolean closed;
+
+    FramedConnection(Socket socket, String name) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.writerThread = new Thread(this::runWriter, name + "-Writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    void send(byte type, byte[] body) {
+        if (closed) {
+            return;
+        }
+        synchronized (sendLock) {
+            int macLength = sendMac != null ? NetworkProtocol.MAC_LENGTH : 0;
+            byte[] frame = new byte[body.length + 1 + macLength];
+            frame[0] = type;
+            System.arraycopy(body, 0, frame, 1, body.length);
+            if (sendMac != null) {
+                byte[] mac = mac(sendMac, sendSequence++, frame, body.length + 1);
+                System.arraycopy(mac, 0, frame, body.length + 1, macLength);
+            }
+            outbound.add(frame);
+        }
+    }
+
+    /**
+     * Signs every frame sent from now on with {@code sendKey} and requires every frame read from now on
+     * to be signed with {@code receiveKey}. Call it from the reading thread, between two frames.
+     */
+    void authenticate(byte[] sendKey, byte[] receiveKey) {
+        synchronized (sendLock) {
+            sendMac = NetworkProtocol.newMac(sendKey);
+        }
+        receiveMac = NetworkProtocol.newMac(receiveKey);
+    }
+
+    void send(byte type) {
+        send(type, new byte[0]);
+    }
+
+    /**
+     * Blocks for the next frame.
+     *
+     * @return the frame, or null when the peer closed the connection
+     */
+    Frame read() throws IOException {
+        byte[] frame = NetworkProtocol.readFrame(in);
+        if (frame == null) {
+            return null;
+        }
+        int length = frame.length;
+        if (receiveMac != null) {
+            length -= NetworkProtocol.MAC_LENGTH;
+            if (length < 1 || !MessageDigest.isEqual(mac(receiveMac, receiveSequence++, frame, length),
+                    Arrays.copyOfRange(frame, length, frame.length))) {
+                throw new IOException("frame failed authentication");
+            }
+        }
+        return new Frame(frame[0], new DataInputStream(new ByteArrayInputStream(frame, 1, length - 1)));
+    }
+
+    private static byte[] mac(Mac mac, long sequence, byte[] frame, int length) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mac.update((byte) (sequence >>> shift));
+        }
+        mac.update(frame, 0, length);
+        return mac.doFinal();
+    }
+
+    void setReadTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // Sends what is already queued, e.g. a REFUSED frame, then closes
+    void close() {
+        if (!closed) {
+            closed = true;
+            outbound.add(CLOSE);
+        }
+    }
+
+    static final class Frame {
+        final byte type;
+        final DataInputStream body;
+
+        Frame(byte type, DataInputStream body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+
+    private void runWriter() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(outbound.take());
+                outbound.drainTo(batch);
+                for (byte[] frame : batch) {
+                    if (frame == CLOSE) {
+                        out.flush();
+                        return;
+                    }
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                }
+                batch.clear();
+                out.flush();
+            }
+        } catch (InterruptedException | IOException e) {
+            // Closing below makes the reader fail too, which is where the connection loss is handled
+        } finally {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.Role;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Help output for one config snapshot. Every help line is built when the snapshot is, and the paginated
+ * embeds a member sees are cached by a fingerprint of their roles: the set of roles that appear in any
+ * command's permissions. Members whose roles grant the same commands share one cached answer.
+ */
+public final class HelpCatalog {
+    // A guild has far fewer distinct combinations of command roles than this, it only guards against surprises
+    private static final int MAX_CACHED = 256;
+    private static final Color COLOR = new Color(0x7B2FBE);
+
+    private final List<String> lines = new ArrayList<>();
+    private final List<BitSet> lineRoles = new ArrayList<>(); // per line, the relevant-role indexes allowed to run it
+    private final long[] relevantRoles; // sorted, a role's index here is its bit in a fingerprint
+    private final Map<BitSet, List<MessageEmbed>> cache = new ConcurrentHashMap<>();
+
+    HelpCatalog(List<CommandConfiguration.CommandInfo> commands) {
+        List<CommandConfiguration.CommandInfo> runnable = new ArrayList<>();
+        for (CommandConfiguration.CommandInfo command : commands) {
+            if (command.isRunnable()) {
+                runnable.add(command);
+            }
+            for (CommandConfiguration.CommandInfo subcommand : command.getSubcommands()) {
+                if (subcommand.isRunnable()) {
+                    runnable.add(subcommand);
+                }
+            }
+        }
+
+        this.relevantRoles = runnable.stream()
+                .flatMapToLong(command -> Arrays.stream(command.getPermissions().toArray()))
+                .distinct()
+                .sorted()
+                .toArray();
+        for (CommandConfiguration.CommandInfo command : runnable) {
+            BitSet allowed = new BitSet(relevantRoles.length);
+            for (long roleId : command.getPermissions().toArray()) {
+                allowed.set(Arrays.binarySearch(relevantRoles, roleId));
+            }
+            lines.add(helpLine(command));
+            lineRoles.add(allowed);
+        }
+    }
+
+    private static String helpLine(CommandConfiguration.CommandInfo command) {
+        StringBuilder line = new StringBuilder("`").append(command.getUsage()).append('`');
+        if (command.getDescription() != null && !command.getDescription().isEmpty()) {
+            line.append(" - ").append(command.getDescription());
+        }
+        if (!command.getAliases().isEmpty()) {
+            line.append(" (aliases: ").append(String.join(", ", command.getAliases())).append(')');
+        }
+        return line.toString();
+    }
+
+    /**
+     * The help pages for a member, one embed per message. Only lists commands the member can run.
+     *
+     * @param member may be null outside a guild, which shows no commands
+     */
+    public List<MessageEmbed> pagesFor(Member member) {
+        BitSet fingerprint = fingerprint(member != null ? member.getRoles() : Collections.emptyList());
+        List<MessageEmbed> pages = cache.get(fingerprint);
+        if (pages == null) {
+            pages = buildPages(fingerprint);
+            if (cache.size() < MAX_CACHED) {
+                cache.putIfAbsent(fingerprint, pages);
+            }
+        }
+        return pages;
+    }
+
+    private BitSet fingerprint(List<Role> roles) {
+        BitSet fingerprint = new BitSet(relevantRoles.length);
+        for (int i = 0, size = roles.size(); i < size; i++) {
+            int index = Arrays.binarySearch(relevantRoles, roles.get(i).getIdLong());
+            if (index >= 0) {
+                fingerprint.set(index);
+            }
+        }
+        return fingerprint;
+    }
+
+    private List<MessageEmbed> buildPages(BitSet fingerprint) {
+        List<String> visible = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lineRoles.get(i).intersects(fingerprint)) {
+                visible.add(lines.get(i));
+            }
+        }
+        if (visible.isEmpty()) {
+            return List.of(new EmbedBuilder().setColor(COLOR).setTitle("Available commands")
+                    .setDescription("You cannot run any commands.").build());
+        }
+
+        List<String> descriptions = ResponseDigest.pack(visible, MessageEmbed.DESCRIPTION_MAX_LENGTH);
+        List<MessageEmbed> pages = new ArrayList<>(descriptions.size());
+        for (int i = 0; i < descriptions.size(); i++) {
+            EmbedBuilder embed = new EmbedBuilder().setColor(COLOR).setTitle("Available commands").setDescription(descriptions.get(i));
+            if (descriptions.size() > 1) {
+                embed.setFooter("Page " + (i + 1) + "/" + descriptions.size());
+            }
+            pages.add(embed.build());
+        }
+        return List.copyOf(pages);
+    }
+}
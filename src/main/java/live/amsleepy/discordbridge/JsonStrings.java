@@ -0,0 +1,37 @@
+package live.amsleepy.discordbridge;
+
+/**
+ * Minimal JSON string escaping for the few hand-written JSON documents the plugin produces.
+ */
+final class JsonStrings {
+    private JsonStrings() {
+    }
+
+    /**
+     * Appends the value as a quoted JSON string, or {@code null} when the value is null.
+     */
+    static void appendQuoted(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,86 @@
+package live.amsleepy.discordbridge;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for Discord commands, per stage of the command path and per command and outcome.
+ * Everything is lock-free, recording from the JDA threads and the main thread costs a map lookup and a few atomic adds.
+ */
+public final class Metrics {
+    // Names users type are not trusted as labels, anything that is not a configured command is counted here
+    public static final String UNKNOWN_COMMAND = "_unknown";
+
+    public enum Stage {
+        /** Message or interaction creation to the listener picking it up, includes clock skew with Discord. */
+        GATEWAY,
+        /** Routing, rate limits, permission check and formatting, up to the command being queued. */
+        CHECK,
+        /** Time spent in the dispatch queue waiting for the main thread. */
+        QUEUE_WAIT,
+        /** Running the command on the main thread. */
+        EXECUTE,
+        /** Sending the result until Discord acknowledges it, slash commands only since prefix replies are batched. */
+        REPLY,
+        /** Listener picking the command up to the result being handed to Discord. */
+        TOTAL
+    }
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+
+    public Metrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stages.get(stage).recordNanos(nanos);
+    }
+
+    /**
+     * Counts an outcome of a configured command and records how long it took to reach it.
+     */
+    public void recordOutcome(String command, AuditLog.Decision decision, long nanos) {
+        commands.computeIfAbsent(command, name -> new CommandMetrics()).record(decision, nanos);
+    }
+
+    public LatencyHistogram getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    /** Per-command metrics, sorted by command name. */
+    public Map<String, CommandMetrics> getCommands() {
+        return new TreeMap<>(commands);
+    }
+
+    public static final class CommandMetrics {
+        private final Map<AuditLog.Decision, LongAdder> outcomes = new EnumMap<>(AuditLog.Decision.class);
+        private final Map<AuditLog.Decision, LatencyHistogram> latencies = new EnumMap<>(AuditLog.Decision.class);
+
+        CommandMetrics() {
+            // Filled up front, so concurrent readers and writers only ever read the maps
+            for (AuditLog.Decision decision : AuditLog.Decision.values()) {
+                outcomes.put(decision, new LongAdder());
+                latencies.put(decision, new LatencyHistogram());
+            }
+        }
+
+        void record(AuditLog.Decision decision, long nanos) {
+            outcomes.get(decision).increment();
+            latencies.get(decision).recordNanos(nanos);
+        }
+
+        public long getCount(AuditLog.Decision decision) {
+            return outcomes.get(decision).sum();
+        }
+
+        public LatencyHistogram getLatency(AuditLog.Decision decision) {
+            return latencies.get(decision);
+        }
+    }
+}
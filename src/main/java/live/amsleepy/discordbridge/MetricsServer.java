@@ -0,0 +1,145 @@
+package live.amsleepy.discordbridge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the plugin's metrics in the Prometheus text format at {@code /metrics}, using the JDK's built-in HTTP server.
+ * Binds to localhost unless configured otherwise, there is no authentication.
+ */
+public final class MetricsServer {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final DiscordBridge plugin;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsServer(DiscordBridge plugin, String bind, int port) throws IOException {
+        this.plugin = plugin;
+        this.server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiscordBridge-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+        Metrics metrics = plugin.getMetrics();
+
+        header(out, "discordbridge_stage_latency_seconds", "summary", "Latency of each stage of the Discord command path");
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            summary(out, "discordbridge_stage_latency_seconds", "stage=\"" + stage.name().toLowerCase(Locale.ROOT) + "\"", metrics.getStage(stage));
+        }
+
+        header(out, "discordbridge_commands_total", "counter", "Discord commands by command and outcome");
+        Map<String, Metrics.CommandMetrics> commands = metrics.getCommands();
+        commands.forEach((name, command) -> {
+            for (AuditLog.Decision decision : AuditLog.Decision.values()) {
+                long count = command.getCount(decision);
+                if (count > 0) {
+                    out.append("discordbridge_commands_total{").append(commandLabels(name, decision)).append("} ").append(count).append('\n');
+                }
+            }
+        });
+        header(out, "discordbridge_command_latency_seconds", "summary", "Time from receiving a Discord command to its outcome");
+        commands.forEach((name, command) -> {
+            for (AuditLog.Decision decision : AuditLog.Decision.values()) {
+                if (command.getCount(decision) > 0) {
+                    summary(out, "discordbridge_command_latency_seconds", commandLabels(name, decision), command.getLatency(decision));
+                }
+            }
+        });
+
+        CommandDispatchQueue queue = plugin.getDispatchQueue();
+        if (queue != null) {
+            gauge(out, "discordbridge_queue_depth", "Commands waiting for the main thread", queue.getQueueDepth());
+            gauge(out, "discordbridge_queue_capacity", "Dispatch queue capacity", queue.getCapacity());
+            counter(out, "discordbridge_queue_rejected_total", "Commands dropped because the queue was full", queue.getRejectedCount());
+            counter(out, "discordbridge_queue_dispatched_total", "Commands run on the main thread", queue.getDispatchedCount());
+            counter(out, "discordbridge_queue_failed_total", "Commands that threw while running", queue.getFailedCount());
+            gauge(out, "discordbridge_queue_max_drain_seconds", "Longest time the queue held the main thread in one tick", queue.getMaxDrainMicros() / 1e6);
+        }
+        NetworkHub hub = plugin.getNetworkHub();
+        if (hub != null) {
+            gauge(out, "discordbridge_network_workers", "Worker servers connected to this hub", hub.getConnectedWorkers().size());
+        }
+        AuditLog auditLog = plugin.getAuditLog();
+        if (auditLog != null) {
+            counter(out, "discordbridge_audit_dropped_total", "Audit records dropped because the buffer was full", auditLog.getDroppedCount());
+        }
+        ChatRelay chatRelay = plugin.getChatRelay();
+        if (chatRelay != null) {
+            counter(out, "discordbridge_relay_dropped_total", "Relayed chat lines dropped because a queue was full", chatRelay.getDroppedCount());
+        }
+        return out.toString();
+    }
+
+    private static String commandLabels(String command, AuditLog.Decision decision) {
+        return "command=\"" + escape(command) + "\",outcome=\"" + decision.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.percentileMicros(quantile) / 1e6).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSumMicros() / 1e6).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,303 @@
+package live.amsleepy.discordbridge;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * The hub side of network mode. This server keeps the Discord connection, and worker servers connect here
+ * instead of running their own bot. Commands configured with {@code servers} are sent to those workers,
+ * pipelined over one connection each, and their results are collected into one reply.
+ */
+public final class NetworkHub {
+    public static final String ALL = "all";
+    static final long PING_INTERVAL_MILLIS = 10_000;
+    // A peer that sent nothing, not even a ping, for this long is gone
+    static final int READ_TIMEOUT_MILLIS = 30_000;
+
+    private final String serverName;
+    private final String secret;
+    private final long timeoutMillis;
+    private final Logger logger;
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean running = true;
+
+    public NetworkHub(String serverName, String host, int port, String secret, long timeoutMillis, Logger logger) throws IOException {
+        this.serverName = serverName.toLowerCase();
+        this.secret = secret;
+        this.timeoutMillis = timeoutMillis;
+        this.logger = logger;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(host, port));
+        this.acceptThread = new Thread(this::runAccept, "DiscordBridge-Hub");
+        this.acceptThread.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiscordBridge-HubTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        acceptThread.start();
+        scheduler.scheduleAtFixedRate(() -> workers.values().forEach(worker -> worker.connection.send(NetworkProtocol.PING)),
+                PING_INTERVAL_MILLIS, PING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        workers.values().forEach(worker -> worker.connection.close());
+        scheduler.shutdownNow();
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Whether the servers name only this one, {@code all} includes the workers. True for none. */
+    public boolean isLocalOnly(List<String> servers) {
+        return servers.stream().allMatch(serverName::equals);
+    }
+
+    /** Names of the workers connected right now, sorted. */
+    public Set<String> getConnectedWorkers() {
+        return new TreeSet<>(workers.keySet());
+    }
+
+    /**
+     * Runs a command on each of the servers, {@code all} meaning this one and every connected worker.
+     * With one target its output is returned as is, with several each output is labelled with its server,
+     * and the result only fails when every server failed.
+     *
+     * @param local runs the command on this server, returning null when it was dropped
+     * @return the output, or null when this server is the only target and dropped the command
+     */
+    public CompletableFuture<String> dispatch(List<String> servers, String command, Function<String, CompletableFuture<String>> local) {
+        List<String> targets = resolve(servers);
+        if (targets.size() == 1) {
+            String target = targets.get(0);
+            return target.equals(serverName) ? local.apply(command) : send(target, command);
+        }
+
+        List<CompletableFuture<String>> lines = new ArrayList<>(targets.size());
+        AtomicInteger failures = new AtomicInteger();
+        for (String target : targets) {
+            CompletableFuture<String> result = target.equals(serverName) ? local.apply(command) : send(target, command);
+            if (result == null) {
+                result = CompletableFuture.failedFuture(new IllegalStateException("the server is busy, the command was dropped"));
+            }
+            lines.add(result.handle((output, error) -> {
+                if (error == null) {
+                    return "[" + target + "] " + output;
+                }
+                failures.incrementAndGet();
+                return "[" + target + "] failed: " + messageOf(error);
+            }));
+        }
+        return CompletableFuture.allOf(lines.toArray(new CompletableFuture[0])).thenCompose(ignored -> {
+            String output = lines.stream().map(CompletableFuture::join).collect(Collectors.joining("\n"));
+            return failures.get() < targets.size() ? CompletableFuture.completedFuture(output)
+                    : CompletableFuture.failedFuture(new IllegalStateException(output));
+        });
+    }
+
+    // In config order without duplicates, "all" expands to this server then the workers by name
+    private List<String> resolve(List<String> servers) {
+        Set<String> targets = new LinkedHashSet<>();
+        for (String server : servers) {
+            if (ALL.equals(server)) {
+                targets.add(serverName);
+                targets.addAll(getConnectedWorkers());
+            } else {
+                targets.add(server);
+            }
+        }
+        return new ArrayList<>(targets);
+    }
+
+    private CompletableFuture<String> send(String server, String command) {
+        Worker worker = workers.get(server);
+        if (worker == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(server + " is not connected"));
+        }
+        long id = nextId.incrementAndGet();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        worker.pending.put(id, result);
+        ScheduledFuture<?> timeout = scheduler.schedule(
+                () -> result.completeExceptionally(new IllegalStateException(server + " did not answer within " + timeoutMillis + " ms")),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((output, error) -> {
+            timeout.cancel(false);
+            worker.pending.remove(id);
+        });
+        worker.connection.send(NetworkProtocol.COMMAND, new NetworkProtocol.Body().writeLong(id).writeString(command).toByteArray());
+        return result;
+    }
+
+    private void runAccept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> handle(socket), "DiscordBridge-Hub-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Failed to accept a worker connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        FramedConnection connection;
+        try {
+            connection = new FramedConnection(socket, "DiscordBridge-Hub");
+        } catch (IOException e) {
+            return;
+        }
+        Worker worker = null;
+        try {
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            byte[] nonce = new byte[NetworkProtocol.NONCE_LENGTH];
+            random.nextBytes(nonce);
+            connection.send(NetworkProtocol.CHALLENGE, new NetworkProtocol.Body().writeInt(NetworkProtocol.VERSION).writeBytes(nonce).toByteArray());
+
+            FramedConnection.Frame hello = connection.read();
+            if (hello == null || hello.type != NetworkProtocol.HELLO) {
+                return;
+            }
+            String claimedName = NetworkProtocol.readString(hello.body);
+            byte[] signature = NetworkProtocol.readBytes(hello.body);
+            byte[] workerNonce = NetworkProtocol.readBytes(hello.body);
+            if (!MessageDigest.isEqual(signature, NetworkProtocol.sign(secret, "worker", nonce, claimedName))) {
+                logger.warning("Refused worker '" + claimedName + "' from " + connection.getRemoteAddress() + ": wrong secret");
+                refuse(connection, "authentication failed");
+                return;
+            }
+            String name = claimedName.toLowerCase();
+            if (name.equals(serverName) || name.equals(ALL)) {
+                refuse(connection, "the name '" + name + "' is reserved");
+                return;
+            }
+            if (workers.containsKey(name)) {
+                refuse(connection, "a server named '" + name + "' is already connected");
+                return;
+            }
+            // Prove this hub knows the secret too, everything after this frame is signed
+            connection.send(NetworkProtocol.WELCOME, new NetworkProtocol.Body()
+                    .writeBytes(NetworkProtocol.sign(secret, "hub", workerNonce, claimedName))
+                    .toByteArray());
+            connection.authenticate(NetworkProtocol.sessionKey(secret, nonce, workerNonce, "hub"),
+                    NetworkProtocol.sessionKey(secret, nonce, workerNonce, "worker"));
+            // Only visible to dispatch once authenticated, a worker that connected twice at once loses here
+            Worker candidate = new Worker(name, connection);
+            if (workers.putIfAbsent(name, candidate) != null) {
+                refuse(connection, "a server named '" + name + "' is already connected");
+                return;
+            }
+            worker = candidate;
+            logger.info("Worker " + name + " connected from " + connection.getRemoteAddress());
+
+            FramedConnection.Frame frame;
+            while ((frame = connection.read()) != null) {
+                switch (frame.type) {
+                    case NetworkProtocol.RESULT:
+                        complete(worker, frame.body);
+                        break;
+                    case NetworkProtocol.PING:
+                        connection.send(NetworkProtocol.PONG);
+                        break;
+                    case NetworkProtocol.PONG:
+                        break;
+                    default:
+                        throw new IOException("unexpected frame type " + frame.type);
+                }
+            }
+        } catch (IOException e) {
+            if (worker != null && running) {
+                logger.warning("Lost connection to worker " + worker.name + ": " + e.getMessage());
+            }
+        } finally {
+            connection.close();
+            if (worker != null) {
+                workers.remove(worker.name, worker);
+                IllegalStateException lost = new IllegalStateException(worker.name + " disconnected before answering");
+                List.copyOf(worker.pending.values()).forEach(result -> result.completeExceptionally(lost));
+                logger.info("Worker " + worker.name + " disconnected");
+            }
+        }
+    }
+
+    private static void complete(Worker worker, DataInputStream body) throws IOException {
+        long id = body.readLong();
+        byte status = body.readByte();
+        String output = NetworkProtocol.readString(body);
+        CompletableFuture<String> result = worker.pending.get(id);
+        if (result == null) {
+            return; // Timed out already
+        }
+        if (status == NetworkProtocol.STATUS_EXECUTED) {
+            result.complete(output);
+        } else if (status == NetworkProtocol.STATUS_DROPPED) {
+            result.completeExceptionally(new IllegalStateException(worker.name + " is busy, the command was dropped"));
+        } else {
+            result.completeExceptionally(new IllegalStateException(output));
+        }
+    }
+
+    private static void refuse(FramedConnection connection, String reason) {
+        connection.send(NetworkProtocol.REFUSED, new NetworkProtocol.Body().writeString(reason).toByteArray());
+    }
+
+    private static String messageOf(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        return String.valueOf(cause.getMessage());
+    }
+
+    private static final class Worker {
+        private final String name;
+        private final FramedConnection connection;
+        // Command ID -> result, completed when the worker's RESULT arrives
+        private final Map<Long, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+        Worker(String name, FramedConnection connection) {
+            this.name = name;
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package live.amsleepy.discordbridge;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Wire format between a hub and its workers. Every frame is a 4-byte length, then a type byte and the body.
+ * <pre>
+ * CHALLENGE hub to worker    version int, 32-byte hub nonce
+ * HELLO     worker to hub    server name, HMAC-SHA256 over the hub nonce and name with the shared secret,
+ *                            32-byte worker nonce
+ * WELCOME   hub to worker    HMAC-SHA256 over the worker nonce and name, proving the hub knows the secret too
+ * REFUSED   hub to worker    reason, the connection is closed after it
+ * COMMAND   hub to worker    id long, command
+ * RESULT    worker to hub    id long, status byte, output
+ * PING/PONG either way       empty, keeps idle connections from timing out
+ * </pre>
+ * Commands are pipelined: the hub sends them without waiting, and each one is acknowledged by a RESULT
+ * carrying its id, in whatever order the worker finishes them.
+ * <p>
+ * Every frame after WELCOME ends with an HMAC-SHA256 over its sequence number, type and body, keyed per
+ * direction from the secret and both nonces, so frames cannot be forged, replayed or reordered. They are
+ * not encrypted, keep the link on a trusted network.
+ */
+public final class NetworkProtocol {
+    public static final int VERSION = 2;
+    public static final int NONCE_LENGTH = 32;
+    static final int MAC_LENGTH = 32;
+    static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    public static final byte CHALLENGE = 1;
+    public static final byte HELLO = 2;
+    public static final byte WELCOME = 3;
+    public static final byte REFUSED = 4;
+    public static final byte COMMAND = 5;
+    public static final byte RESULT = 6;
+    public static final byte PING = 7;
+    public static final byte PONG = 8;
+
+    public static final byte STATUS_EXECUTED = 0;
+    public static final byte STATUS_FAILED = 1;
+    public static final byte STATUS_DROPPED = 2;
+
+    private NetworkProtocol() {
+    }
+
+    /** Builds a frame body, the connection adds the length and type. */
+    static final class Body {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Body writeLong(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // never happens, the bytes go to memory
+            }
+            return this;
+        }
+
+        Body writeInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Body writeByte(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        Body writeBytes(byte[] value) {
+            writeInt(value.length);
+            bytes.writeBytes(value);
+            return this;
+        }
+
+        // Not writeUTF, command output can be longer than its 64 KB limit
+        Body writeString(String value) {
+            return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid field length " + length);
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the frame with its type as the first byte, or null at end of stream
+     */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * Proof that {@code role}, "hub" or "worker", knows the secret. The role keeps one side's proof from
+     * being reflected back as the other's.
+     */
+    static byte[] sign(String secret, String role, byte[] nonce, String serverName) {
+        return hmac(secret.getBytes(StandardCharsets.UTF_8), role.getBytes(StandardCharsets.UTF_8), nonce, serverName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Key for the frames one side sends, {@code direction} being "hub" or "worker". */
+    static byte[] sessionKey(String secret, byte[] hubNonce, byte[] workerNonce, String direction) {
+        byte[] session = hmac(secret.getBytes(StandardCharsets.UTF_8), "session".getBytes(StandardCharsets.UTF_8), hubNonce, workerNonce);
+        return hmac(session, direction.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is unavailable", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, byte[]... parts) {
+        Mac mac = newMac(key);
+        for (byte[] part : parts) {
+            mac.update(part);
+        }
+        return mac.doFinal();
+    }
+}
@@ -0,0 +1,201 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.entities.Message;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * The worker side of network mode. Instead of running a bot, this server keeps one connection to the hub,
+ * runs the commands it forwards and answers each with its output. Reconnects with backoff when the hub goes away.
+ */
+public final class NetworkWorker {
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    // The hub replies with at most one Discord message, and a frame over the protocol limit would cost the connection
+    private static final int MAX_OUTPUT_LENGTH = Message.MAX_CONTENT_LENGTH;
+
+    private final String serverName;
+    private final String host;
+    private final int port;
+    private final String secret;
+    private final Function<String, CompletableFuture<String>> executor; // null when the command was dropped
+    private final Logger logger;
+    private final SecureRandom random = new SecureRandom();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile FramedConnection connection;
+    private volatile boolean connected;
+
+    public NetworkWorker(String serverName, String host, int port, String secret, Function<String, CompletableFuture<String>> executor, Logger logger) {
+        this.serverName = serverName.toLowerCase();
+        this.host = host;
+        this.port = port;
+        this.secret = secret;
+        this.executor = executor;
+        this.logger = logger;
+        this.thread = new Thread(this::run, "DiscordBridge-HubClient");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        FramedConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
+        thread.interrupt();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void run() {
+        long backoffMillis = 1000;
+        String lastFailure = null;
+        while (running) {
+            try {
+                session();
+                // The hub was up, so retry quickly and report the next failure even if it is the same as the last
+                backoffMillis = 1000;
+                lastFailure = null;
+            } catch (IOException e) {
+                // A hub that is down would otherwise log the same line every few seconds
+                if (running && !String.valueOf(e.getMessage()).equals(lastFailure)) {
+                    logger.warning("Hub connection to " + host + ":" + port + " failed: " + e.getMessage() + ", retrying");
+                    lastFailure = String.valueOf(e.getMessage());
+                }
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+        }
+    }
+
+    /**
+     * One connection, from the handshake until either side closes it.
+     *
+     * @throws IOException when the connection could not be established, returns normally once it was
+     */
+    private void session() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        FramedConnection current = new FramedConnection(socket, "DiscordBridge-HubClient");
+        connection = current;
+        try {
+            current.setReadTimeout(NetworkHub.READ_TIMEOUT_MILLIS);
+            FramedConnection.Frame challenge = current.read();
+            if (challenge == null || challenge.type != NetworkProtocol.CHALLENGE) {
+                throw new IOException("the hub did not send a challenge");
+            }
+            int version = challenge.body.readInt();
+            if (version != NetworkProtocol.VERSION) {
+                throw new IOException("the hub speaks protocol version " + version + ", this server " + NetworkProtocol.VERSION);
+            }
+            byte[] nonce = NetworkProtocol.readBytes(challenge.body);
+            byte[] workerNonce = new byte[NetworkProtocol.NONCE_LENGTH];
+            random.nextBytes(workerNonce);
+            current.send(NetworkProtocol.HELLO, new NetworkProtocol.Body()
+                    .writeString(serverName)
+                    .writeBytes(NetworkProtocol.sign(secret, "worker", nonce, serverName))
+                    .writeBytes(workerNonce)
+                    .toByteArray());
+
+            FramedConnection.Frame reply = current.read();
+            if (reply != null && reply.type == NetworkProtocol.REFUSED) {
+                throw new IOException("refused by the hub: " + NetworkProtocol.readString(reply.body));
+            }
+            if (reply == null || reply.type != NetworkProtocol.WELCOME) {
+                throw new IOException("the hub closed the connection");
+            }
+            // Commands run as console, so only take them from a peer that knows the secret
+            if (!MessageDigest.isEqual(NetworkProtocol.readBytes(reply.body), NetworkProtocol.sign(secret, "hub", workerNonce, serverName))) {
+                throw new IOException("the hub did not prove it knows the secret, check network.secret");
+            }
+            current.authenticate(NetworkProtocol.sessionKey(secret, nonce, workerNonce, "worker"),
+                    NetworkProtocol.sessionKey(secret, nonce, workerNonce, "hub"));
+            connected = true;
+            logger.info("Connected to the hub at " + host + ":" + port + " as " + serverName);
+
+            try {
+                FramedConnection.Frame frame;
+                while ((frame = current.read()) != null) {
+                    switch (frame.type) {
+                        case NetworkProtocol.COMMAND:
+                            execute(current, frame.body.readLong(), NetworkProtocol.readString(frame.body));
+                            break;
+                        case NetworkProtocol.PING:
+                            current.send(NetworkProtocol.PONG);
+                            break;
+                        case NetworkProtocol.PONG:
+                            break;
+                        case NetworkProtocol.REFUSED:
+                            throw new IOException("refused by the hub: " + NetworkProtocol.readString(frame.body));
+                        default:
+                            throw new IOException("unexpected frame type " + frame.type);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Hub connection to " + host + ":" + port + " lost: " + e.getMessage());
+                }
+            }
+        } finally {
+            if (connected) {
+                connected = false;
+                logger.info("Disconnected from the hub");
+            }
+            current.close();
+            connection = null;
+        }
+    }
+
+    // Never waits for the command, the result is sent whenever it completes so the hub can keep pipelining
+    private void execute(FramedConnection current, long id, String command) {
+        CompletableFuture<String> completion;
+        try {
+            completion = executor.apply(command);
+        } catch (RuntimeException e) {
+            completion = CompletableFuture.failedFuture(e);
+        }
+        if (completion == null) {
+            sendResult(current, id, NetworkProtocol.STATUS_DROPPED, "");
+            return;
+        }
+        completion.whenComplete((output, error) -> {
+            if (error == null) {
+                sendResult(current, id, NetworkProtocol.STATUS_EXECUTED, String.valueOf(output));
+            } else {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                sendResult(current, id, NetworkProtocol.STATUS_FAILED, String.valueOf(cause.getMessage()));
+            }
+        });
+    }
+
+    private static void sendResult(FramedConnection current, long id, byte status, String output) {
+        current.send(NetworkProtocol.RESULT, new NetworkProtocol.Body().writeLong(id).writeByte(status).writeString(truncate(output)).toByteArray());
+    }
+
+    private static String truncate(String output) {
+        if (output.length() <= MAX_OUTPUT_LENGTH) {
+            return output;
+        }
+        String notice = "\n... (" + output.length() + " characters total)";
+        return output.substring(0, MAX_OUTPUT_LENGTH - notice.length()) + notice;
+    }
+}
@@ -0,0 +1,107 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.entities.Role;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of Discord role IDs allowed to run a command.
+ * Compiled once per config load with role groups already expanded, so checking a member
+ * is a binary search per role and never allocates.
+ */
+public final class PermissionSet {
+    private static final PermissionSet EMPTY = new PermissionSet(new long[0]);
+
+    private final long[] roleIds; // sorted, no duplicates
+
+    private PermissionSet(long[] roleIds) {
+        this.roleIds = roleIds;
+    }
+
+    public static PermissionSet compile(String owner, List<String> roles, Map<String, List<String>> roleGroups) {
+        if (roles == null || roles.isEmpty()) {
+            return EMPTY;
+        }
+
+        long[] ids = new long[8];
+        int count = 0;
+        for (String roleNameOrID : roles) {
+            List<String> group = roleGroups.get(roleNameOrID.toLowerCase());
+            List<String> resolved = group != null ? group : List.of(roleNameOrID);
+            for (String roleId : resolved) {
+                long id = parseRoleId(roleId);
+                if (id < 0) {
+                    System.err.println("Ignoring invalid role ID '" + roleId + "' for " + owner);
+                    continue;
+                }
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = id;
+            }
+        }
+
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        Arrays.sort(ids, 0, count);
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return new PermissionSet(Arrays.copyOf(ids, unique));
+    }
+
+    /**
+     * Parses a Discord snowflake, returning -1 when the string is not a valid ID.
+     */
+    static long parseRoleId(String roleId) {
+        if (roleId == null || roleId.isEmpty() || roleId.length() > 20) {
+            return -1;
+        }
+        try {
+            return Long.parseUnsignedLong(roleId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public boolean contains(long roleId) {
+        return Arrays.binarySearch(roleIds, roleId) >= 0;
+    }
+
+    public boolean matchesAny(List<Role> roles) {
+        if (roleIds.length == 0) {
+            return false;
+        }
+        for (int i = 0, size = roles.size(); i < size; i++) {
+            if (Arrays.binarySearch(roleIds, roles.get(i).getIdLong()) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return roleIds.length == 0;
+    }
+
+    public int size() {
+        return roleIds.length;
+    }
+
+    /** A sorted copy of the role IDs. */
+    public long[] toArray() {
+        return roleIds.clone();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(roleIds);
+    }
+}
@@ -0,0 +1,50 @@
+package live.amsleepy.discordbridge;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limit: up to {@code capacity} requests in a burst, refilled at {@code refillPerSecond}.
+ */
+public final class RateLimit {
+    private final int capacity;
+    private final double refillPerSecond;
+    private final long emissionIntervalNanos; // time to refill one token
+    private final long burstNanos;            // time to refill the whole bucket
+
+    public RateLimit(int capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+        this.burstNanos = emissionIntervalNanos * capacity;
+    }
+
+    /**
+     * Reads {@code capacity} and {@code refillPerSecond} from the section.
+     *
+     * @return the limit, or null when the section is missing or does not describe a usable limit
+     */
+    public static RateLimit fromConfig(ConfigurationSection section, String owner) {
+        if (section == null) {
+            return null;
+        }
+        int capacity = section.getInt("capacity", 0);
+        double refillPerSecond = section.getDouble("refillPerSecond", 0);
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            System.err.println("Ignoring rate limit for " + owner + ": capacity and refillPerSecond must be positive");
+            return null;
+        }
+        return new RateLimit(capacity, refillPerSecond);
+    }
+
+    public int getCapacity() { return capacity; }
+    public double getRefillPerSecond() { return refillPerSecond; }
+    long getEmissionIntervalNanos() { return emissionIntervalNanos; }
+    long getBurstNanos() { return burstNanos; }
+
+    @Override
+    public String toString() {
+        return capacity + " per burst, " + refillPerSecond + "/s";
+    }
+}
@@ -0,0 +1,300 @@
+package live.amsleepy.discordbridge;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Enforces the global, per-user and per-command rate limits from config.yml.
+ * Buckets use the generic cell rate algorithm: each one is a single atomic timestamp updated with CAS,
+ * so checks never lock. Per-user buckets live in primitive-keyed tables. Bucket state survives config reloads,
+ * limits are read from the current snapshot.
+ */
+public final class RateLimiter {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    public enum Decision {
+        ALLOWED,
+        /** First rejection since the user was last allowed, worth telling them about. */
+        REJECTED,
+        /** The user was already told, stay quiet. */
+        REJECTED_QUIET
+    }
+
+    private final Bucket global = new Bucket();
+    private final BucketMap users = new BucketMap();
+    private final Map<String, BucketMap> commandUsers = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+    /**
+     * Only takes a token when every bucket that applies has room, so a rejected command costs the user nothing.
+     * A user is told about the first rejection since they were last allowed, whichever limit it came from.
+     *
+     * @param command the command, or null for built-ins like help, which only count against the global and per-user limits
+     */
+    public Decision tryAcquire(ConfigSnapshot snapshot, CommandConfiguration.CommandInfo command, long userId) {
+        long now = System.nanoTime();
+        sweepIfDue(now);
+
+        RateLimit commandLimit = command != null ? command.getRateLimit() : null;
+        RateLimit userLimit = snapshot.getUserRateLimit();
+        RateLimit globalLimit = snapshot.getGlobalRateLimit();
+        Bucket commandBucket = commandLimit != null
+                ? commandUsers.computeIfAbsent(command.getName(), name -> new BucketMap()).get(userId)
+                : null;
+        Bucket userBucket = userLimit != null ? users.get(userId) : users.find(userId);
+
+        if ((commandBucket != null && !commandBucket.hasRoom(commandLimit, now))
+                || (userLimit != null && !userBucket.hasRoom(userLimit, now))
+                || (globalLimit != null && !global.hasRoom(globalLimit, now))) {
+            return reject(userId, userBucket);
+        }
+        // Another thread can take the last token between the check and here, then what was taken goes back
+        if (commandBucket != null && !commandBucket.tryAcquire(commandLimit, now)) {
+            return reject(userId, userBucket);
+        }
+        if (userLimit != null && !userBucket.tryAcquire(userLimit, now)) {
+            refund(commandBucket, commandLimit);
+            return reject(userId, userBucket);
+        }
+        if (globalLimit != null && !global.tryAcquire(globalLimit, now)) {
+            refund(commandBucket, commandLimit);
+            refund(userLimit != null ? userBucket : null, userLimit);
+            return reject(userId, userBucket);
+        }
+
+        if (userBucket != null) {
+            userBucket.warned = false;
+        }
+        return Decision.ALLOWED;
+    }
+
+    // The user's bucket carries the warned flag even without a per-user limit
+    private Decision reject(long userId, Bucket userBucket) {
+        return (userBucket != null ? userBucket : users.get(userId)).reject();
+    }
+
+    private static void refund(Bucket bucket, RateLimit limit) {
+        if (bucket != null) {
+            bucket.refund(limit);
+        }
+    }
+
+    // Full buckets carry no state worth keeping, drop them so the maps only hold recently active users
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        users.sweep(now);
+        for (BucketMap buckets : commandUsers.values()) {
+            buckets.sweep(now);
+        }
+        commandUsers.values().removeIf(BucketMap::isEmpty);
+    }
+
+    private static final class Bucket {
+        // Theoretical arrival time: when the bucket will be full again
+        private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+        volatile boolean warned;
+
+        boolean hasRoom(RateLimit limit, long now) {
+            long current = tat.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            return base + limit.getEmissionIntervalNanos() - now <= limit.getBurstNanos();
+        }
+
+        boolean tryAcquire(RateLimit limit, long now) {
+            long interval = limit.getEmissionIntervalNanos();
+            long burst = limit.getBurstNanos();
+            while (true) {
+                long current = tat.get();
+                long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                long next = base + interval;
+                if (next - now > burst) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        void refund(RateLimit limit) {
+            tat.addAndGet(-limit.getEmissionIntervalNanos());
+        }
+
+        Decision reject() {
+            if (warned) {
+                return Decision.REJECTED_QUIET;
+            }
+            warned = true;
+            return Decision.REJECTED;
+        }
+
+        boolean isIdle(long now) {
+            long current = tat.get();
+            return current == Long.MIN_VALUE || current - now < 0;
+        }
+    }
+
+    /**
+     * Open-addressing table from user ID to bucket, keyed by the primitive ID so lookups neither box nor
+     * allocate. Lookups and inserts are lock-free, a new key claims its slot with CAS. Growing and sweeping
+     * copy the live buckets into a new table under a lock and publish it; a bucket inserted into the old table
+     * during the copy is lost, which only gives that user a fresh bucket.
+     */
+    private static final class BucketMap {
+        private static final int MIN_CAPACITY = 64;
+        private final Object copyLock = new Object();
+        private volatile Table table = new Table(MIN_CAPACITY);
+
+        /** The user's bucket, created when missing. */
+        Bucket get(long userId) {
+            while (true) {
+                Table current = table;
+                Bucket bucket = current.getOrCreate(userId);
+                if (bucket != null) {
+                    return bucket;
+                }
+                synchronized (copyLock) {
+                    if (table == current) {
+                        table = current.copy(current.capacity() * 2, Long.MIN_VALUE);
+                    }
+                }
+            }
+        }
+
+        /** The user's bucket, or null when there is none. */
+        Bucket find(long userId) {
+            return table.find(userId);
+        }
+
+        void sweep(long now) {
+            synchronized (copyLock) {
+                Table current = table;
+                int live = current.countLive(now);
+                int capacity = MIN_CAPACITY;
+                while (capacity < live * 4) {
+                    capacity *= 2;
+                }
+                table = current.copy(capacity, now);
+            }
+        }
+
+        boolean isEmpty() {
+            return table.size.get() == 0;
+        }
+    }
+
+    private static final class Table {
+        private static final long EMPTY = 0;
+        private static final long ZERO = -1; // Stands in for a key of 0, snowflakes are never negative
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<Bucket> buckets;
+        private final AtomicInteger size = new AtomicInteger();
+        private final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            buckets = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        // Null when the table is half full and has to grow first
+        Bucket getOrCreate(long key) {
+            key = key == EMPTY ? ZERO : key;
+            for (int i = slot(key), probes = 0; probes <= mask; ) {
+                long current = keys.get(i);
+                if (current == key) {
+                    return bucketAt(i);
+                }
+                if (current == EMPTY) {
+                    if (size.get() >= capacity() / 2) {
+                        return null;
+                    }
+                    if (keys.compareAndSet(i, EMPTY, key)) {
+                        size.incrementAndGet();
+                        Bucket bucket = new Bucket();
+                        buckets.set(i, bucket);
+                        return bucket;
+                    }
+                    continue; // Lost the slot, look at it again
+                }
+                i = (i + 1) & mask;
+                probes++;
+            }
+            return null;
+        }
+
+        Bucket find(long key) {
+            key = key == EMPTY ? ZERO : key;
+            for (int i = slot(key), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long current = keys.get(i);
+                if (current == key) {
+                    return bucketAt(i);
+                }
+                if (current == EMPTY) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        int countLive(long now) {
+            int live = 0;
+            for (int i = 0; i <= mask; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && !bucket.isIdle(now)) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        // Long.MIN_VALUE as now keeps every bucket
+        Table copy(int capacity, long now) {
+            Table copy = new Table(capacity);
+            for (int i = 0; i <= mask; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && (now == Long.MIN_VALUE || !bucket.isIdle(now))) {
+                    copy.put(keys.get(i), bucket);
+                }
+            }
+            return copy;
+        }
+
+        private void put(long key, Bucket bucket) {
+            int i = slot(key);
+            while (keys.get(i) != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys.set(i, key);
+            buckets.set(i, bucket);
+            size.incrementAndGet();
+        }
+
+        // The key is claimed just before its bucket is stored
+        private Bucket bucketAt(int i) {
+            Bucket bucket;
+            while ((bucket = buckets.get(i)) == null) {
+                Thread.onSpinWait();
+            }
+            return bucket;
+        }
+
+        // Snowflake IDs share their high bits, mix them so neighbours spread out
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
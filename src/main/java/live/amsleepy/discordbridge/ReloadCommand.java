@@ -1,11 +1,22 @@
 package live.amsleepy.discordbridge;
 
+import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+
 public class ReloadCommand implements CommandExecutor {
+    private static final int HISTORY_DEFAULT = 10;
+    private static final int HISTORY_MAX = 100;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
     private final JavaPlugin plugin;
     private final String prefix;
 
@@ -22,13 +33,112 @@ public class ReloadCommand implements CommandExecutor {
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (args.length == 1 && args[0].equalsIgnoreCase("reload")) {
             if (plugin instanceof DiscordBridge) {
-                ((DiscordBridge) plugin).reloadPluginConfig();
-                sender.sendMessage(prefix + "DiscordBridge plugin configuration reloaded.");
+                sender.sendMessage(prefix + "Reloading the DiscordBridge configuration...");
+                ((DiscordBridge) plugin).reloadPluginConfig().whenComplete((problems, error) ->
+                        // The reload finishes on a worker thread, answer from the main thread
+                        plugin.getServer().getScheduler().runTask(plugin, () -> sendReloadResult(sender, problems, error)));
             } else {
                 sender.sendMessage(prefix + "Failed to reload the configuration.");
             }
             return true;
         }
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            if (plugin instanceof DiscordBridge) {
+                sendStats(sender, (DiscordBridge) plugin);
+            } else {
+                sender.sendMessage(prefix + "Stats are unavailable.");
+            }
+            return true;
+        }
+        if ((args.length == 1 || args.length == 2) && args[0].equalsIgnoreCase("history")) {
+            CommandJournal journal = plugin instanceof DiscordBridge ? ((DiscordBridge) plugin).getJournal() : null;
+            if (journal == null) {
+                sender.sendMessage(prefix + "Command history needs journal.enabled in config.yml.");
+                return true;
+            }
+            int count = HISTORY_DEFAULT;
+            if (args.length == 2) {
+                try {
+                    count = Math.max(1, Math.min(HISTORY_MAX, Integer.parseInt(args[1])));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            sendHistory(sender, journal.getHistory(count));
+            return true;
+        }
         return false;
     }
+
+    private void sendReloadResult(CommandSender sender, List<String> problems, Throwable error) {
+        if (error != null) {
+            sender.sendMessage(prefix + "Failed to reload the configuration: " + error.getMessage());
+        } else if (problems.isEmpty()) {
+            sender.sendMessage(prefix + "DiscordBridge plugin configuration reloaded.");
+        } else {
+            sender.sendMessage(prefix + "Kept the current configuration, config.yml has " + problems.size() + " problem(s):");
+            problems.forEach(problem -> sender.sendMessage(ChatColor.RED + "  " + problem));
+        }
+    }
+
+    private void sendStats(CommandSender sender, DiscordBridge bridge) {
+        sender.sendMessage(prefix + "Command path latency (p50 / p99 / max, count):");
+        Metrics metrics = bridge.getMetrics();
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            LatencyHistogram histogram = metrics.getStage(stage);
+            sender.sendMessage(ChatColor.GRAY + "  " + stage.name().toLowerCase() + ": " + ChatColor.WHITE
+                    + millis(histogram.percentileMicros(0.5)) + " / " + millis(histogram.percentileMicros(0.99)) + " / "
+                    + millis(histogram.getMaxMicros()) + " (" + histogram.getCount() + ")");
+        }
+
+        CommandDispatchQueue queue = bridge.getDispatchQueue();
+        if (queue != null) {
+            sender.sendMessage(prefix + "Queue: " + queue.getQueueDepth() + "/" + queue.getCapacity() + " waiting, "
+                    + queue.getDispatchedCount() + " run, " + queue.getFailedCount() + " failed, " + queue.getRejectedCount() + " dropped");
+        }
+
+        NetworkHub hub = bridge.getNetworkHub();
+        if (hub != null) {
+            Set<String> connected = hub.getConnectedWorkers();
+            sender.sendMessage(prefix + "Network workers connected: " + (connected.isEmpty() ? "none" : String.join(", ", connected)));
+        }
+        NetworkWorker worker = bridge.getNetworkWorker();
+        if (worker != null) {
+            sender.sendMessage(prefix + "Network hub: " + (worker.isConnected() ? "connected" : "not connected"));
+        }
+
+        sender.sendMessage(prefix + "Commands (executed / failed / denied / invalid / rate limited):");
+        metrics.getCommands().forEach((name, command) -> sender.sendMessage(ChatColor.GRAY + "  " + name + ": " + ChatColor.WHITE
+                + command.getCount(AuditLog.Decision.EXECUTED) + " / " + command.getCount(AuditLog.Decision.FAILED) + " / "
+                + command.getCount(AuditLog.Decision.DENIED) + " / " + command.getCount(AuditLog.Decision.INVALID) + " / "
+                + command.getCount(AuditLog.Decision.RATE_LIMITED)));
+    }
+
+    private void sendHistory(CommandSender sender, List<CommandJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            sender.sendMessage(prefix + "No commands have been run from Discord yet.");
+            return;
+        }
+        sender.sendMessage(prefix + "Last " + entries.size() + " command(s) from Discord, newest first:");
+        for (CommandJournal.Entry entry : entries) {
+            sender.sendMessage(ChatColor.GRAY + "  " + TIME.format(Instant.ofEpochMilli(entry.getAcceptedAt())) + " " + entry.getUserName()
+                    + " (" + entry.getSource() + "): " + ChatColor.WHITE + entry.getCommand() + " " + statusOf(entry));
+        }
+    }
+
+    private static String statusOf(CommandJournal.Entry entry) {
+        String replayed = entry.isReplayed() ? ", replayed" : "";
+        switch (entry.getStatus()) {
+            case EXECUTED:
+                return ChatColor.GREEN + "[executed" + replayed + "]";
+            case PENDING:
+                return ChatColor.YELLOW + (entry.isStarted() ? "[running" : "[pending") + replayed + "]";
+            default:
+                return ChatColor.RED + "[" + entry.getStatus().name().toLowerCase() + replayed + "]";
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.1f ms", micros / 1000.0);
+    }
 }
\ No newline at end of file
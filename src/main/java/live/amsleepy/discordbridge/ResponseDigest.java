@@ -0,0 +1,162 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Collects bot replies per channel and sends each burst as one message.
+ * Replies that arrive within the digest window of the first one are joined, together with the role pings
+ * they carry, so a burst of commands costs one REST call per channel instead of several per command.
+ */
+public final class ResponseDigest {
+    private static final int MESSAGE_LIMIT = Message.MAX_CONTENT_LENGTH;
+
+    private final Map<Long, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+
+    public ResponseDigest(long windowMillis) {
+        this.windowMillis = Math.max(0, windowMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiscordBridge-ResponseDigest");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void send(MessageChannel channel, String line) {
+        send(channel, line, null);
+    }
+
+    /**
+     * Queues a reply line for the channel.
+     *
+     * @param pingRoleIds roles to mention along with the line, may be null
+     */
+    public void send(MessageChannel channel, String line, long[] pingRoleIds) {
+        if (windowMillis == 0 || scheduler.isShutdown()) {
+            Batch batch = new Batch(channel);
+            batch.add(line, pingRoleIds);
+            batch.flush();
+            return;
+        }
+
+        pending.compute(channel.getIdLong(), (id, batch) -> {
+            if (batch == null) {
+                batch = new Batch(channel);
+                scheduler.schedule(() -> flush(id), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(line, pingRoleIds);
+            return batch;
+        });
+    }
+
+    private void flush(long channelId) {
+        Batch batch = pending.remove(channelId);
+        if (batch != null) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * Sends everything still pending and stops the scheduler.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Long channelId : new ArrayList<>(pending.keySet())) {
+            flush(channelId);
+        }
+    }
+
+    /**
+     * Appends mentions for the given roles to the reply content.
+     */
+    static String withPings(String content, long[] pingRoleIds) {
+        if (pingRoleIds == null || pingRoleIds.length == 0) {
+            return content;
+        }
+        StringBuilder builder = new StringBuilder(content).append('\n');
+        for (long roleId : pingRoleIds) {
+            builder.append("<@&").append(roleId).append("> ");
+        }
+        return builder.toString().trim();
+    }
+
+    /**
+     * Joins lines with newlines into as few messages as possible, none longer than the limit.
+     * Lines that are too long on their own are cut. Always returns at least one message.
+     */
+    static List<String> pack(List<String> lines, int limit) {
+        List<String> messages = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : lines) {
+            if (line.length() > limit) {
+                line = line.substring(0, limit - 3) + "...";
+            }
+            if (current.length() > 0 && current.length() + 1 + line.length() > limit) {
+                messages.add(current.toString());
+                current.setLength(0);
+            }
+            if (current.length() > 0) {
+                current.append('\n');
+            }
+            current.append(line);
+        }
+        messages.add(current.toString());
+        return messages;
+    }
+
+    private static final class Batch {
+        private final MessageChannel channel;
+        private final List<String> lines = new ArrayList<>();
+        private long[] pingRoleIds = new long[0];
+
+        Batch(MessageChannel channel) {
+            this.channel = channel;
+        }
+
+        // Only called inside ConcurrentHashMap.compute, which serializes access per channel
+        void add(String line, long[] roleIds) {
+            lines.add(line);
+            if (roleIds != null && roleIds.length > 0) {
+                pingRoleIds = LongStream.concat(LongStream.of(pingRoleIds), LongStream.of(roleIds)).distinct().toArray();
+            }
+        }
+
+        void flush() {
+            List<String> messages = pack(lines, MESSAGE_LIMIT);
+
+            // Pings go on the last message, or on one of their own if they do not fit
+            String pings = withPings("", pingRoleIds);
+            if (!pings.isEmpty()) {
+                int last = messages.size() - 1;
+                String content = messages.get(last);
+                if (content.isEmpty()) {
+                    messages.set(last, pings);
+                } else if (content.length() + 1 + pings.length() <= MESSAGE_LIMIT) {
+                    messages.set(last, content + '\n' + pings);
+                } else {
+                    messages.add(pings);
+                }
+            }
+
+            for (int i = 0; i < messages.size(); i++) {
+                boolean last = i == messages.size() - 1;
+                channel.sendMessage(messages.get(i))
+                        .setAllowedMentions(EnumSet.noneOf(Message.MentionType.class))
+                        .mentionRoles(last ? pingRoleIds : new long[0])
+                        .queue();
+            }
+        }
+    }
+}
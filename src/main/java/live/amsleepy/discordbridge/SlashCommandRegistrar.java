@@ -0,0 +1,228 @@
+package live.amsleepy.discordbridge;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps Discord's slash commands in sync with config.yml without overwriting the whole list every time.
+ * Each command's JSON is hashed and the hashes last registered are saved to disk. Only commands whose
+ * hash changed, or that are missing on Discord, are upserted, and only commands no longer configured are deleted.
+ * When nothing changed, no request is made at all.
+ */
+public final class SlashCommandRegistrar {
+    private static final String GLOBAL = "global";
+
+    private final JDA jda;
+    private final File stateFile;
+    private final Logger logger;
+    // target ("global" or a guild ID) -> command name -> hash of the registered command
+    private final Map<String, Map<String, String>> registered = new HashMap<>();
+    // Older versions registered every command globally and saved no state, so without a state file there may be stale copies
+    private boolean legacyGlobalChecked;
+
+    public SlashCommandRegistrar(JDA jda, File stateFile, Logger logger) {
+        this.jda = jda;
+        this.stateFile = stateFile;
+        this.logger = logger;
+        this.legacyGlobalChecked = stateFile.isFile();
+        loadState();
+    }
+
+    /**
+     * Brings the registered commands in line with the given list. Blocks on REST calls, so never call it
+     * on the main thread. With guild IDs the commands go to those guilds, which update instantly,
+     * and anything this plugin registered globally before is removed. That includes global copies of the
+     * configured commands left by versions that did not save what they registered.
+     */
+    public synchronized void register(List<CommandData> commands, List<String> guildIds) throws InterruptedException {
+        Map<String, CommandData> desired = new LinkedHashMap<>();
+        Map<String, String> desiredHashes = new HashMap<>();
+        for (CommandData command : commands) {
+            desired.put(command.getName(), command);
+            desiredHashes.put(command.getName(), hash(command));
+        }
+
+        List<String> targets = guildIds.isEmpty() ? List.of(GLOBAL) : guildIds;
+        boolean changed = false;
+
+        for (String target : targets) {
+            if (desiredHashes.equals(registered.get(target))) {
+                continue;
+            }
+            if (sync(target, desired, desiredHashes)) {
+                changed = true;
+            }
+        }
+
+        // Clean up targets that are no longer configured, e.g. after switching from global to guild commands
+        for (String target : List.copyOf(registered.keySet())) {
+            if (!targets.contains(target) && sync(target, Map.of(), Map.of())) {
+                registered.remove(target);
+                changed = true;
+            }
+        }
+
+        // Saving state afterwards means this only runs once
+        if (!guildIds.isEmpty() && !legacyGlobalChecked && !registered.containsKey(GLOBAL)) {
+            legacyGlobalChecked = removeGlobal(desired.keySet());
+            changed |= legacyGlobalChecked;
+        }
+
+        if (changed) {
+            saveState();
+        } else {
+            logger.info("Slash commands unchanged, nothing to register");
+        }
+    }
+
+    private boolean sync(String target, Map<String, CommandData> desired, Map<String, String> desiredHashes) throws InterruptedException {
+        Map<String, String> previous = registered.getOrDefault(target, Map.of());
+        Guild guild = null;
+        if (!GLOBAL.equals(target)) {
+            jda.awaitReady();
+            guild = jda.getGuildById(target);
+            if (guild == null) {
+                logger.warning("Cannot register slash commands in guild " + target + ", the bot is not a member of it");
+                return false;
+            }
+        }
+
+        Function<CommandData, RestAction<Command>> upsert = guild != null ? guild::upsertCommand : jda::upsertCommand;
+        Function<String, RestAction<Void>> delete = guild != null ? guild::deleteCommandById : jda::deleteCommandById;
+
+        try {
+            List<Command> current = (guild != null ? guild.retrieveCommands() : jda.retrieveCommands()).complete();
+            Map<String, Command> remote = new HashMap<>();
+            for (Command command : current) {
+                remote.put(command.getName(), command);
+            }
+
+            int upserted = 0;
+            int deleted = 0;
+            for (Map.Entry<String, CommandData> entry : desired.entrySet()) {
+                String name = entry.getKey();
+                if (!isUpToDate(remote.get(name), desiredHashes.get(name), previous.get(name))) {
+                    upsert.apply(entry.getValue()).complete();
+                    upserted++;
+                }
+            }
+            for (Command command : remote.values()) {
+                if (!desired.containsKey(command.getName())) {
+                    delete.apply(command.getId()).complete();
+                    deleted++;
+                }
+            }
+
+            if (desired.isEmpty()) {
+                registered.remove(target);
+            } else {
+                registered.put(target, new HashMap<>(desiredHashes));
+            }
+            logger.info("Slash commands for " + target + ": " + upserted + " upserted, " + deleted + " deleted, "
+                    + (desired.size() - upserted) + " unchanged");
+            return true;
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to register slash commands for " + target + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    // Only deletes commands with the given names, other global commands may belong to someone else
+    private boolean removeGlobal(Set<String> names) {
+        try {
+            int deleted = 0;
+            for (Command command : jda.retrieveCommands().complete()) {
+                if (names.contains(command.getName())) {
+                    jda.deleteCommandById(command.getId()).complete();
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                logger.info("Removed " + deleted + " global slash command(s) left by an earlier version, they are now registered per guild");
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to remove old global slash commands: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private static boolean isUpToDate(Command remote, String desiredHash, String previousHash) {
+        if (remote == null) {
+            return false;
+        }
+        if (desiredHash.equals(previousHash)) {
+            return true;
+        }
+        // No saved state yet, compare against what Discord has
+        try {
+            return desiredHash.equals(hash(CommandData.fromCommand(remote)));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static String hash(CommandData command) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(command.toData().toJson()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void loadState() {
+        if (!stateFile.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read " + stateFile.getName() + ", all slash commands will be checked", e);
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            int split = key.indexOf('.');
+            if (split > 0) {
+                registered.computeIfAbsent(key.substring(0, split), target -> new HashMap<>())
+                        .put(key.substring(split + 1), properties.getProperty(key));
+            }
+        }
+    }
+
+    private void saveState() {
+        Properties properties = new Properties();
+        registered.forEach((target, hashes) -> hashes.forEach((name, hash) -> properties.setProperty(target + "." + name, hash)));
+        try {
+            Files.createDirectories(stateFile.toPath().getParent());
+            try (Writer writer = Files.newBufferedWriter(stateFile.toPath(), StandardCharsets.UTF_8)) {
+                properties.store(writer, "Slash commands last registered by DiscordBridge, delete to force a full sync");
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save " + stateFile.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package live.amsleepy.discordbridge;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual-thread executors on Java 21+, looked up reflectively so the plugin still builds for and runs on Java 17.
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * An executor that starts a new virtual thread per task, with threads named {@code <name>-0}, {@code <name>-1}...
+     *
+     * @return the executor, or null when the runtime has no virtual threads
+     */
+    public static ExecutorService newExecutor(String name) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Failed to create virtual threads, using platform threads: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * A virtual-thread executor when enabled and supported, otherwise a cached pool of daemon platform threads.
+     */
+    public static ExecutorService newExecutorOrPool(String name, boolean preferVirtual) {
+        ExecutorService executor = preferVirtual ? newExecutor(name) : null;
+        if (executor != null) {
+            return executor;
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameters) {
+        try {
+            return type.getMethod(name, parameters);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}